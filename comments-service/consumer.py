@@ -37,17 +37,33 @@ CREATE TABLE IF NOT EXISTS comment (
 """)
 db_conn.commit()
 
+# Outcome events, published only once a change is committed (consumed by the API gateway's comment stream)
+EVENTS_EXCHANGE = "comment-events-exchange"
+
+def publish_outcome(ch, event_type, data):
+    try:
+        ch.basic_publish(
+            exchange=EVENTS_EXCHANGE,
+            routing_key=f"comment.{event_type}",
+            body=json.dumps(data, default=str)
+        )
+    except Exception as e:
+        # The change is committed; a lost notification only delays clients until they refetch
+        print(f"[!] Failed to publish {event_type} outcome: {e}", flush=True)
+
 # --- Message handler ---
 def callback(ch, method, properties, body):
     print(f"[x] Received event {method.routing_key}: {body}", flush=True)
     try:
         event_data = json.loads(body)
+        outcome = None
 
         if method.routing_key == "comment.created":
             cursor.execute(
                 """
                 INSERT INTO comment (comment_text, author_id, ticket_id, creation_date)
                 VALUES (%s, %s, %s, %s)
+                RETURNING id, comment_text, author_id, ticket_id, creation_date
                 """,
                 (
                     event_data["comment_text"],
@@ -56,6 +72,14 @@ def callback(ch, method, properties, body):
                     event_data["creation_date"]
                 )
             )
+            row = cursor.fetchone()
+            outcome = ("created", {
+                "id": row[0],
+                "comment_text": row[1],
+                "author_id": row[2],
+                "ticket_id": row[3],
+                "creation_date": row[4].isoformat()
+            })
             print("[✓] Inserted new comment into DB.", flush=True)
 
         elif method.routing_key == "comment.updated":
@@ -79,9 +103,17 @@ def callback(ch, method, properties, body):
                 UPDATE comment
                 SET comment_text = %s
                 WHERE id = %s
+                RETURNING id, comment_text, author_id, ticket_id
                 """,
                 (event_data["comment_text"], event_data["id"])
             )
+            row = cursor.fetchone()
+            outcome = ("updated", {
+                "id": row[0],
+                "comment_text": row[1],
+                "author_id": row[2],
+                "ticket_id": row[3]
+            })
             print("[✓] Updated comment in DB.", flush=True)
 
         elif method.routing_key == "comment.deleted":
@@ -94,14 +126,19 @@ def callback(ch, method, properties, body):
                 return
 
             cursor.execute(
-                "DELETE FROM comment WHERE id = %s",
+                "DELETE FROM comment WHERE id = %s RETURNING id, ticket_id",
                 (event_data["id"],)
             )
+            row = cursor.fetchone()
+            outcome = ("deleted", {"id": row[0], "ticket_id": row[1]})
             print("[✓] Deleted comment from DB.", flush=True)
 
         db_conn.commit()
         ch.basic_ack(delivery_tag=method.delivery_tag)
 
+        if outcome:
+            publish_outcome(ch, *outcome)
+
     except Exception as e:
         print("[!] Error processing message:", e, flush=True)
         ch.basic_nack(delivery_tag=method.delivery_tag)
@@ -127,6 +164,7 @@ def main():
     # Declare exchange & queue
     channel.exchange_declare(exchange="comments-exchange", exchange_type="direct", durable=True)
     channel.queue_declare(queue="comments-queue", durable=True)
+    channel.exchange_declare(exchange=EVENTS_EXCHANGE, exchange_type="direct", durable=True)
 
     # Bind queue to multiple routing keys
     for event in ["created", "updated", "deleted"]:
@@ -0,0 +1,25 @@
+package com.example.analytics;
+
+/**
+ * 64-bit string hash shared by the sketches (FNV-1a followed by the MurmurHash3
+ * finalizer, so every output bit depends on every input character).
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
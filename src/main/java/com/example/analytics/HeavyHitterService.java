@@ -0,0 +1,317 @@
+package com.example.analytics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the heaviest request paths, users, tickets and search queries over a
+ * sliding window, in memory that does not grow with the number of distinct keys.
+ *
+ * The window is a ring of time buckets. Each bucket holds, per dimension, a
+ * count-min sketch, a top-K heap of candidate keys and a HyperLogLog of distinct
+ * keys; a bucket is cleared and reused when the ring wraps around. Requests only
+ * enqueue a small record (dropped if the queue is full); a single worker thread
+ * updates the sketches.
+ */
+@Service
+public class HeavyHitterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeavyHitterService.class);
+
+    /** Keys longer than this are truncated so the top-K heaps stay bounded */
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final int BATCH_SIZE = 256;
+    private static final Pattern TICKET_PATH = Pattern.compile("^/api/tickets/(\\d+)(?:/.*)?$");
+    private static final Pattern ID_SEGMENT = Pattern.compile("^(\\d+|[0-9a-fA-F-]{16,})$");
+
+    public enum Dimension {
+        PATHS, USERS, TICKETS, QUERIES
+    }
+
+    private final boolean enabled;
+    private final long bucketMillis;
+    private final int topK;
+    private final Bucket[] ring;
+    private final ArrayBlockingQueue<Hit> queue;
+    private final Counter dropped;
+    private final Thread worker;
+
+    public HeavyHitterService(MeterRegistry meterRegistry,
+                              @Value("${gateway.analytics.enabled:true}") boolean enabled,
+                              @Value("${gateway.analytics.bucket:30s}") Duration bucket,
+                              @Value("${gateway.analytics.buckets:30}") int buckets,
+                              @Value("${gateway.analytics.top-k:50}") int topK,
+                              @Value("${gateway.analytics.sketch-depth:4}") int sketchDepth,
+                              @Value("${gateway.analytics.sketch-width:1024}") int sketchWidth,
+                              @Value("${gateway.analytics.hll-precision:12}") int hllPrecision,
+                              @Value("${gateway.analytics.queue-capacity:10000}") int queueCapacity) {
+        this.enabled = enabled;
+        this.bucketMillis = bucket.toMillis();
+        this.topK = topK;
+        this.ring = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            ring[i] = new Bucket(topK, sketchDepth, sketchWidth, hllPrecision);
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.dropped = Counter.builder("gateway.analytics.dropped")
+                .description("Requests not counted by heavy-hitter analytics because its queue was full")
+                .register(meterRegistry);
+        Gauge.builder("gateway.analytics.queued", queue, ArrayBlockingQueue::size)
+                .description("Requests waiting to be counted by heavy-hitter analytics")
+                .register(meterRegistry);
+
+        this.worker = new Thread(this::run, "heavy-hitters");
+        this.worker.setDaemon(true);
+        if (enabled) {
+            this.worker.start();
+        }
+    }
+
+    /**
+     * Counts a request. Never blocks; the request is dropped from the statistics if
+     * the worker is behind.
+     * @param userId user validated by AuthFilter ({@link com.example.middleware.UserContext}), null for guests
+     */
+    public void record(String method, String path, String queryString, String userId) {
+        if (!enabled) {
+            return;
+        }
+        if (!queue.offer(new Hit(System.currentTimeMillis(), method, path, queryString, userId))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Heaviest keys per dimension over the most recent part of the window.
+     * @param window length of the window to report, rounded up to whole buckets
+     * @param limit maximum number of keys per dimension, at most top-k
+     */
+    public synchronized Map<String, Object> snapshot(Duration window, int limit) {
+        int bucketCount = (int) Math.max(1, Math.min(ring.length,
+                (window.toMillis() + bucketMillis - 1) / bucketMillis));
+        limit = Math.max(1, Math.min(limit, topK));
+        long currentEpoch = System.currentTimeMillis() / bucketMillis;
+
+        List<Bucket> buckets = new ArrayList<>();
+        for (Bucket bucket : ring) {
+            if (bucket.epoch > currentEpoch - bucketCount && bucket.epoch <= currentEpoch) {
+                buckets.add(bucket);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowSeconds", bucketCount * bucketMillis / 1000);
+        result.put("from", Instant.ofEpochMilli((currentEpoch - bucketCount + 1) * bucketMillis).toString());
+        result.put("to", Instant.now().toString());
+        for (Dimension dimension : Dimension.values()) {
+            result.put(dimension.name().toLowerCase(Locale.ROOT), summarize(buckets, dimension.ordinal(), limit));
+        }
+        result.put("dropped", (long) dropped.count());
+        return result;
+    }
+
+    private Map<String, Object> summarize(List<Bucket> buckets, int dimension, int limit) {
+        long total = 0;
+        byte[] registers = ring[0].distinct[dimension].newRegisters();
+        Set<String> candidates = new HashSet<>();
+        for (Bucket bucket : buckets) {
+            total += bucket.sketches[dimension].total();
+            bucket.distinct[dimension].mergeInto(registers);
+            candidates.addAll(bucket.tops[dimension].keys());
+        }
+
+        // Estimate each candidate over the whole window and keep the largest
+        PriorityQueue<KeyCount> heaviest = new PriorityQueue<>(limit + 1, (a, b) -> Long.compare(a.count, b.count));
+        for (String key : candidates) {
+            long hash = Hashing.hash64(key);
+            long count = 0;
+            for (Bucket bucket : buckets) {
+                count += bucket.sketches[dimension].estimate(hash);
+            }
+            heaviest.add(new KeyCount(key, count));
+            if (heaviest.size() > limit) {
+                heaviest.poll();
+            }
+        }
+        List<Map<String, Object>> top = new ArrayList<>();
+        while (!heaviest.isEmpty()) {
+            KeyCount keyCount = heaviest.poll();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", keyCount.key);
+            entry.put("count", keyCount.count);
+            top.add(0, entry);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total", total);
+        summary.put("distinct", HyperLogLog.cardinality(registers));
+        // Counts may be overestimated by up to this much (with high probability)
+        summary.put("maxOvercount", (long) Math.ceil(Math.E / ring[0].sketches[dimension].width() * total));
+        summary.put("top", top);
+        return summary;
+    }
+
+    private void run() {
+        List<Hit> batch = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            synchronized (this) {
+                for (Hit hit : batch) {
+                    try {
+                        count(hit);
+                    } catch (RuntimeException e) {
+                        logger.debug("Cannot count request {}: {}", hit.path, e.getMessage());
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void count(Hit hit) {
+        long epoch = hit.timeMillis / bucketMillis;
+        Bucket bucket = ring[(int) (epoch % ring.length)];
+        if (bucket.epoch != epoch) {
+            if (bucket.epoch > epoch) {
+                // Older than the window that reuses this bucket
+                return;
+            }
+            bucket.reset(epoch);
+        }
+
+        bucket.add(Dimension.PATHS.ordinal(), hit.method + " " + normalizePath(hit.path));
+        if (hit.userId != null) {
+            bucket.add(Dimension.USERS.ordinal(), hit.userId);
+        }
+        Matcher ticket = TICKET_PATH.matcher(hit.path);
+        if (ticket.matches()) {
+            bucket.add(Dimension.TICKETS.ordinal(), ticket.group(1));
+        }
+        if (hit.path.endsWith("/search") && hit.queryString != null) {
+            String query = searchQuery(hit.queryString);
+            if (query != null) {
+                bucket.add(Dimension.QUERIES.ordinal(), query);
+            }
+        }
+    }
+
+    /**
+     * Replaces id-like segments so e.g. /api/tickets/42/comments counts as /api/tickets/{id}/comments.
+     */
+    private static String normalizePath(String path) {
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (ID_SEGMENT.matcher(segments[i]).matches()) {
+                segments[i] = "{id}";
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private static String searchQuery(String queryString) {
+        for (String parameter : queryString.split("&")) {
+            if (parameter.startsWith("query=")) {
+                String query = URLDecoder.decode(parameter.substring("query=".length()), StandardCharsets.UTF_8)
+                        .trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+                return query.isEmpty() ? null : query;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.interrupt();
+    }
+
+    private static class Bucket {
+        private long epoch = -1;
+        private final CountMinSketch[] sketches;
+        private final TopK[] tops;
+        private final HyperLogLog[] distinct;
+
+        Bucket(int topK, int sketchDepth, int sketchWidth, int hllPrecision) {
+            int dimensions = Dimension.values().length;
+            sketches = new CountMinSketch[dimensions];
+            tops = new TopK[dimensions];
+            distinct = new HyperLogLog[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                sketches[i] = new CountMinSketch(sketchDepth, sketchWidth);
+                tops[i] = new TopK(topK);
+                distinct[i] = new HyperLogLog(hllPrecision);
+            }
+        }
+
+        void add(int dimension, String key) {
+            if (key.length() > MAX_KEY_LENGTH) {
+                key = key.substring(0, MAX_KEY_LENGTH);
+            }
+            long hash = Hashing.hash64(key);
+            int count = sketches[dimension].add(hash);
+            tops[dimension].offer(key, count);
+            distinct[dimension].add(hash);
+        }
+
+        void reset(long epoch) {
+            this.epoch = epoch;
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i].clear();
+                tops[i].clear();
+                distinct[i].clear();
+            }
+        }
+    }
+
+    private static class Hit {
+        private final long timeMillis;
+        private final String method;
+        private final String path;
+        private final String queryString;
+        private final String userId;
+
+        Hit(long timeMillis, String method, String path, String queryString, String userId) {
+            this.timeMillis = timeMillis;
+            this.method = method;
+            this.path = path;
+            this.queryString = queryString;
+            this.userId = userId;
+        }
+    }
+
+    private static class KeyCount {
+        private final String key;
+        private final long count;
+
+        KeyCount(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
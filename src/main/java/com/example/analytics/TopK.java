@@ -0,0 +1,65 @@
+package com.example.analytics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the keys with the highest estimated counts seen so far, up to a fixed
+ * capacity, in a min-heap: a new key only gets in by beating the smallest one.
+ * Counts come from a {@link CountMinSketch}. Not thread-safe.
+ */
+public class TopK {
+
+    private final int capacity;
+    private final PriorityQueue<Candidate> heap;
+    private final Map<String, Candidate> candidates;
+
+    public TopK(int capacity) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity, (a, b) -> Long.compare(a.count, b.count));
+        this.candidates = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Updates the key with its latest estimated count.
+     */
+    public void offer(String key, long count) {
+        Candidate candidate = candidates.get(key);
+        if (candidate != null) {
+            heap.remove(candidate);
+            candidate.count = count;
+            heap.add(candidate);
+            return;
+        }
+        if (heap.size() >= capacity) {
+            if (count <= heap.peek().count) {
+                return;
+            }
+            candidates.remove(heap.poll().key);
+        }
+        candidate = new Candidate(key, count);
+        candidates.put(key, candidate);
+        heap.add(candidate);
+    }
+
+    public Collection<String> keys() {
+        return candidates.keySet();
+    }
+
+    public void clear() {
+        heap.clear();
+        candidates.clear();
+    }
+
+    private static class Candidate {
+        private final String key;
+        private long count;
+
+        Candidate(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Thread pool running proxied upstream calls. Requests are processed in servlet
+ * async mode so the container can notify the gateway of timeouts and client
+ * disconnects while the upstream call is in progress.
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${gateway.upstream.threads:200}")
+    private int upstreamThreads;
+
+    @Value("${gateway.upstream.queue-capacity:100}")
+    private int upstreamQueueCapacity;
+
+    @Bean
+    public ThreadPoolTaskExecutor upstreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(upstreamThreads);
+        executor.setMaxPoolSize(upstreamThreads);
+        executor.setQueueCapacity(upstreamQueueCapacity);
+        executor.setThreadNamePrefix("upstream-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(upstreamExecutor());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Subscribes the gateway to the comment outcome events published by comments-service.
+ *
+ * These are published to "comment-events-exchange" only after a change is committed,
+ * unlike the unvalidated commands comment-api sends to "comments-exchange". Each
+ * gateway instance gets its own exclusive, auto-delete queue, so it receives a copy
+ * of every event.
+ */
+@Configuration
+public class CommentStreamConfig {
+
+    public static final String COMMENT_EVENTS_EXCHANGE = "comment-events-exchange";
+
+    private static final String[] EVENT_TYPES = {"created", "updated", "deleted"};
+
+    @Bean
+    public DirectExchange commentEventsExchange() {
+        // Must match the declaration in comments-service (direct, durable)
+        return new DirectExchange(COMMENT_EVENTS_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Queue commentStreamQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Declarables commentStreamBindings(DirectExchange commentEventsExchange, Queue commentStreamQueue) {
+        List<Binding> bindings = new ArrayList<>();
+        for (String eventType : EVENT_TYPES) {
+            bindings.add(BindingBuilder.bind(commentStreamQueue).to(commentEventsExchange).with("comment." + eventType));
+        }
+        return new Declarables(bindings);
+    }
+}
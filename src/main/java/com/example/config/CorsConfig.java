@@ -40,7 +40,8 @@ public class CorsConfig {
         // The frontend should NOT send or receive these headers
         config.setExposedHeaders(Arrays.asList(
             "Authorization",
-            "Content-Type"
+            "Content-Type",
+            "Idempotent-Replayed"
         ));
         
         // Cache preflight requests for 1 hour
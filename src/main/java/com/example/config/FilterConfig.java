@@ -1,6 +1,11 @@
 package com.example.config;
 
 import com.example.middleware.AuthFilter;
+import com.example.middleware.DeadlineFilter;
+import com.example.middleware.HeavyHitterFilter;
+import com.example.middleware.LoadSheddingFilter;
+import com.example.middleware.ProfilingFilter;
+import com.example.middleware.RateLimitFilter;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,6 +13,17 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class FilterConfig {
 
+    @Bean
+    public FilterRegistrationBean<DeadlineFilter> deadlineFilterRegistration(DeadlineFilter deadlineFilter) {
+        FilterRegistrationBean<DeadlineFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(deadlineFilter);
+        registration.addUrlPatterns("/api/*");
+        registration.setName("deadlineFilter");
+        // First, so the time budget covers every other filter (load-shedding queue included)
+        registration.setOrder(1);
+        return registration;
+    }
+
     @Bean
     public FilterRegistrationBean<AuthFilter> authFilterRegistration(AuthFilter authFilter) {
         FilterRegistrationBean<AuthFilter> registration = new FilterRegistrationBean<>();
@@ -19,4 +35,48 @@ public class FilterConfig {
         registration.setOrder(2);
         return registration;
     }
+
+    @Bean
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilterRegistration(LoadSheddingFilter loadSheddingFilter) {
+        FilterRegistrationBean<LoadSheddingFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(loadSheddingFilter);
+        registration.addUrlPatterns("/api/*");
+        registration.setName("loadSheddingFilter");
+        // Must run after AuthFilter, which derives the role used for prioritization
+        registration.setOrder(6);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ProfilingFilter> profilingFilterRegistration(ProfilingFilter profilingFilter) {
+        FilterRegistrationBean<ProfilingFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(profilingFilter);
+        registration.addUrlPatterns("/api/*");
+        registration.setName("profilingFilter");
+        // After AuthFilter (role is known), before LoadSheddingFilter (queueing is measured)
+        registration.setOrder(3);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<HeavyHitterFilter> heavyHitterFilterRegistration(HeavyHitterFilter heavyHitterFilter) {
+        FilterRegistrationBean<HeavyHitterFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(heavyHitterFilter);
+        registration.addUrlPatterns("/api/*");
+        registration.setName("heavyHitterFilter");
+        // After AuthFilter (user is known), before LoadSheddingFilter (shed requests are counted)
+        registration.setOrder(4);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(rateLimitFilter);
+        registration.addUrlPatterns("/api/*");
+        registration.setName("rateLimitFilter");
+        // After AuthFilter (user is known), before LoadSheddingFilter so limited requests never take a slot
+        registration.setOrder(5);
+        return registration;
+    }
 }
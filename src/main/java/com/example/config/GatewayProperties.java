@@ -0,0 +1,214 @@
+package com.example.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-route settings for the forwarding layer, bound from gateway.routes.&lt;name&gt;.*
+ *
+ * Routes are matched in declaration order against the request method and URI;
+ * the first match wins, so declare specific paths before wildcard ones.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "gateway")
+public class GatewayProperties {
+
+    /** Time budget for requests whose route sets no timeout */
+    private Duration defaultTimeout = Duration.ofSeconds(10);
+
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public Map<String, Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    @PostConstruct
+    public void nameRoutes() {
+        routes.forEach((name, route) -> route.setName(name));
+    }
+
+    public static class Route {
+        /** Key of the route under gateway.routes, used in metrics */
+        private String name;
+        /** Ant-style pattern matched against the request URI, e.g. /api/tickets/** */
+        private String path;
+        /** HTTP methods this route applies to; empty means all */
+        private List<String> methods = new ArrayList<>();
+        /** Time budget for the whole request, including the upstream call; null uses the default */
+        private Duration timeout;
+        private Projection projection = new Projection();
+        private Shadow shadow = new Shadow();
+        private Idempotency idempotency = new Idempotency();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(List<String> methods) {
+            this.methods = methods;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Projection getProjection() {
+            return projection;
+        }
+
+        public void setProjection(Projection projection) {
+            this.projection = projection;
+        }
+
+        public Shadow getShadow() {
+            return shadow;
+        }
+
+        public void setShadow(Shadow shadow) {
+            this.shadow = shadow;
+        }
+
+        public Idempotency getIdempotency() {
+            return idempotency;
+        }
+
+        public void setIdempotency(Idempotency idempotency) {
+            this.idempotency = idempotency;
+        }
+    }
+
+    /**
+     * Lets clients shrink JSON list responses with ?fields=a,b&amp;offset=N&amp;size=M
+     */
+    public static class Projection {
+        private boolean enabled;
+        /** Top-level field holding the list (e.g. "tickets"); empty when the body is a bare array */
+        private String collection;
+        /** Upper bound for the size parameter */
+        private int maxSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public void setCollection(String collection) {
+            this.collection = collection;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Mirrors a share of the route's traffic to a candidate upstream for comparison
+     */
+    public static class Shadow {
+        /** Base URL of the candidate, replacing the primary service base URL (e.g. http://ticket-service-canary:3003) */
+        private String url;
+        /** Share of requests to mirror, 0-100 */
+        private double percentage;
+        /** Also mirror POST/PUT/PATCH/DELETE; off by default since the shadow would repeat side effects */
+        private boolean includeWrites;
+        /** JSON field names left out of the body comparison at any depth (e.g. timestamps, request ids) */
+        private List<String> ignoredFields = new ArrayList<>();
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public double getPercentage() {
+            return percentage;
+        }
+
+        public void setPercentage(double percentage) {
+            this.percentage = percentage;
+        }
+
+        public boolean isIncludeWrites() {
+            return includeWrites;
+        }
+
+        public void setIncludeWrites(boolean includeWrites) {
+            this.includeWrites = includeWrites;
+        }
+
+        public List<String> getIgnoredFields() {
+            return ignoredFields;
+        }
+
+        public void setIgnoredFields(List<String> ignoredFields) {
+            this.ignoredFields = ignoredFields;
+        }
+    }
+
+    /**
+     * Deduplicates retried writes carrying the same Idempotency-Key header
+     */
+    public static class Idempotency {
+        private boolean enabled;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+}
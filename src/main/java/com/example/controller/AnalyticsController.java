@@ -0,0 +1,35 @@
+package com.example.controller;
+
+import com.example.analytics.HeavyHitterService;
+import com.example.middleware.RoleRequired;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Admin endpoint reporting the heaviest paths, users, tickets and search queries
+ * seen by the gateway recently.
+ */
+@RestController
+@RequestMapping("/api/admin/analytics")
+@RoleRequired("admin")
+public class AnalyticsController {
+
+    @Autowired
+    private HeavyHitterService heavyHitterService;
+
+    /**
+     * E.g. GET /api/admin/analytics/heavy-hitters?windowSeconds=300&limit=10
+     */
+    @GetMapping("/heavy-hitters")
+    public Map<String, Object> heavyHitters(
+            @RequestParam(value = "windowSeconds", defaultValue = "300") long windowSeconds,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return heavyHitterService.snapshot(Duration.ofSeconds(windowSeconds), limit);
+    }
+}
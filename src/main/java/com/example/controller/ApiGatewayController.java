@@ -1,10 +1,18 @@
 package com.example.controller;
 
+import com.example.config.GatewayProperties;
+import com.example.service.DeadlineService;
+import com.example.service.IdempotencyService;
+import com.example.service.JsonProjection;
+import com.example.service.RouteRegistry;
+import com.example.service.ShadowService;
+import com.example.service.UpstreamClient;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.Enumeration;
@@ -28,7 +36,20 @@ public class ApiGatewayController {
     private String commentServiceUrl;
 
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private UpstreamClient upstreamClient;
+
+    @Autowired
+    private RouteRegistry routeRegistry;
+
+    @Autowired
+    private DeadlineService deadlineService;
+
+    @Autowired
+    private ShadowService shadowService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
 
     public ApiGatewayController() {
         logger.info("ApiGatewayController initialized!");
@@ -38,7 +59,7 @@ public class ApiGatewayController {
      * Forward requests to auth service (no authentication required)
      */
     @RequestMapping(value = "/auth/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardToAuthService(
+    public WebAsyncTask<ResponseEntity<String>> forwardToAuthService(
             HttpServletRequest request,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
@@ -46,7 +67,7 @@ public class ApiGatewayController {
         
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
         
         String path = request.getRequestURI().substring("/api/auth".length());
@@ -61,9 +82,14 @@ public class ApiGatewayController {
         }
         
         HttpEntity<String> entity = new HttpEntity<>(body, headers);
+        HttpMethod method = HttpMethod.valueOf(request.getMethod());
         
+        return deadlineService.submit(request, "auth-service", () -> exchangeWithAuthService(url, method, entity));
+    }
+
+    private ResponseEntity<String> exchangeWithAuthService(String url, HttpMethod method, HttpEntity<String> entity) {
         try {
-            return restTemplate.exchange(url, HttpMethod.valueOf(request.getMethod()), entity, String.class);
+            return upstreamClient.exchange(url, method, entity, null);
         } catch (HttpClientErrorException e) {
             // Forward 4xx errors as-is (like 401, 409, etc.) with proper content type
             HttpHeaders responseHeaders = new HttpHeaders();
@@ -84,7 +110,7 @@ public class ApiGatewayController {
      * Forward requests to role endpoints in user-service
      */
     @RequestMapping(value = "/roles/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardToRoleService(
+    public WebAsyncTask<ResponseEntity<String>> forwardToRoleService(
             HttpServletRequest request,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
@@ -92,17 +118,18 @@ public class ApiGatewayController {
         
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
         
-        return forwardRequestSimple(request, "http://user-service:3002/api", authorization, contentType, body);
+        return deadlineService.submit(request, "user-service",
+                idempotencyService.wrap(request, body, () -> forwardRequestSimple(request, "http://user-service:3002/api", authorization, contentType, body)));
     }
 
     /**
      * Forward requests to moderator endpoints (must be before /users/** to avoid conflict)
      */
     @RequestMapping(value = "/moderators/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardToModeratorService(
+    public WebAsyncTask<ResponseEntity<String>> forwardToModeratorService(
             HttpServletRequest request,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
@@ -110,17 +137,18 @@ public class ApiGatewayController {
         
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
         
-        return forwardRequestSimple(request, "http://user-service:3002/api", authorization, contentType, body);
+        return deadlineService.submit(request, "user-service",
+                idempotencyService.wrap(request, body, () -> forwardRequestSimple(request, "http://user-service:3002/api", authorization, contentType, body)));
     }
 
     /**
      * Forward requests to user service (authentication required)
      */
     @RequestMapping(value = "/users/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardToUserService(
+    public WebAsyncTask<ResponseEntity<String>> forwardToUserService(
             HttpServletRequest request,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
@@ -128,17 +156,18 @@ public class ApiGatewayController {
         
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
         
-        return forwardRequestSimple(request, "http://user-service:3002/api", authorization, contentType, body);
+        return deadlineService.submit(request, "user-service",
+                idempotencyService.wrap(request, body, () -> forwardRequestSimple(request, "http://user-service:3002/api", authorization, contentType, body)));
     }
 
     /**
      * Forward ticket comments to comment-service (must be before /tickets/**)
      */
     @RequestMapping(value = "/tickets/*/comments/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardTicketCommentsToCommentService(
+    public WebAsyncTask<ResponseEntity<String>> forwardTicketCommentsToCommentService(
             HttpServletRequest request,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
@@ -146,17 +175,18 @@ public class ApiGatewayController {
         
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
         
-        return forwardRequestSimple(request, "http://comment-api:5003/api", authorization, contentType, body);
+        return deadlineService.submit(request, "comment-api",
+                idempotencyService.wrap(request, body, () -> forwardRequestSimple(request, "http://comment-api:5003/api", authorization, contentType, body)));
     }
 
     /**
      * Forward requests to comment-service
      */
     @RequestMapping(value = "/comments/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardToCommentService(
+    public WebAsyncTask<ResponseEntity<String>> forwardToCommentService(
             HttpServletRequest request,
             @RequestHeader(value = "Authorization", required = false) String authorization,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
@@ -164,16 +194,17 @@ public class ApiGatewayController {
         
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
         
-        return forwardRequestSimple(request, "http://comment-api:5003/api", authorization, contentType, body);
+        return deadlineService.submit(request, "comment-api",
+                idempotencyService.wrap(request, body, () -> forwardRequestSimple(request, "http://comment-api:5003/api", authorization, contentType, body)));
     }
     /**
      * Forward requests to ticket-service
      */
     @RequestMapping(value = "/tickets/**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS})
-    public ResponseEntity<String> forwardToTicketService(
+    public WebAsyncTask<ResponseEntity<String>> forwardToTicketService(
             HttpServletRequest request,
             @RequestBody(required = false) String body,
             @RequestHeader(value = "x-user", required = false) String userId,
@@ -181,10 +212,11 @@ public class ApiGatewayController {
 
         // Handle OPTIONS requests for CORS preflight
         if ("OPTIONS".equals(request.getMethod())) {
-            return ResponseEntity.ok().build();
+            return deadlineService.completed(ResponseEntity.ok().build());
         }
 
-        return forwardRequest(request, body, ticketServiceUrl, userId, userRole);
+        return deadlineService.submit(request, "ticket-service",
+                idempotencyService.wrap(request, body, () -> forwardRequest(request, body, ticketServiceUrl, userId, userRole)));
     }
 
     
@@ -204,6 +236,7 @@ public class ApiGatewayController {
             String originalPath = request.getRequestURI();
             String servicePath = originalPath.substring(4); // Remove "/api"
             String targetUrl = serviceUrl + servicePath;
+            GatewayProperties.Route route = routeRegistry.resolve(request.getMethod(), originalPath);
 
             // Add query parameters if present
             String queryString = request.getQueryString();
@@ -255,8 +288,10 @@ public class ApiGatewayController {
             // Determine HTTP method
             HttpMethod method = HttpMethod.valueOf(request.getMethod());
 
-            // Forward the request
-            ResponseEntity<String> response = restTemplate.exchange(targetUrl, method, entity, String.class);
+            // Forward the request, shaping list responses if the route allows it
+            JsonProjection projection = JsonProjection.fromRequest(request, route);
+            ShadowService.ShadowRequest shadow = shadowService.sample(route, serviceUrl, targetUrl, method, entity);
+            ResponseEntity<String> response = upstreamClient.exchange(targetUrl, method, entity, projection, shadow);
 
             return response;
 
@@ -286,6 +321,7 @@ public class ApiGatewayController {
             String originalPath = request.getRequestURI();
             String servicePath = originalPath.substring(4); // Remove "/api"
             String targetUrl = serviceUrl + servicePath;
+            GatewayProperties.Route route = routeRegistry.resolve(request.getMethod(), originalPath);
             
             // Add query parameters if present
             String queryString = request.getQueryString();
@@ -331,8 +367,10 @@ public class ApiGatewayController {
             
             HttpEntity<String> entity = new HttpEntity<>(body, headers);
             HttpMethod method = HttpMethod.valueOf(request.getMethod());
+            JsonProjection projection = JsonProjection.fromRequest(request, route);
+            ShadowService.ShadowRequest shadow = shadowService.sample(route, serviceUrl, targetUrl, method, entity);
             
-            return restTemplate.exchange(targetUrl, method, entity, String.class);
+            return upstreamClient.exchange(targetUrl, method, entity, projection, shadow);
             
         } catch (HttpClientErrorException e) {
             return ResponseEntity.status(e.getStatusCode())
@@ -0,0 +1,43 @@
+package com.example.controller;
+
+import com.example.service.CommentStreamService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * Server-Sent Events endpoint pushing comment changes for a ticket, so clients
+ * don't have to poll GET /api/tickets/{id}/comments.
+ */
+@RestController
+@RequestMapping("/api")
+public class CommentStreamController {
+
+    @Autowired
+    private CommentStreamService commentStreamService;
+
+    /**
+     * Stream comment.created / comment.updated / comment.deleted events for a ticket
+     * (must be more specific than /tickets/{id}/comments/** in ApiGatewayController)
+     */
+    @GetMapping(value = "/tickets/{ticketId}/comments/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamTicketComments(@PathVariable("ticketId") long ticketId,
+                                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Tell nginx not to buffer the stream
+        response.setHeader("X-Accel-Buffering", "no");
+
+        // The service takes the request async and writes the stream itself (non-blocking)
+        if (!commentStreamService.subscribe(String.valueOf(ticketId), request, response)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many comment stream subscribers");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.controller;
+
+import com.example.middleware.RoleRequired;
+import com.example.profiling.ProfilingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Admin endpoints to control on-demand JFR recordings of the gateway.
+ */
+@RestController
+@RequestMapping("/api/admin/profiling")
+@RoleRequired("admin")
+public class ProfilingController {
+
+    @Autowired
+    private ProfilingService profilingService;
+
+    @GetMapping
+    public Map<String, Object> status() {
+        return profilingService.status();
+    }
+
+    /**
+     * Start a recording, e.g. POST /api/admin/profiling/start?profile=profile&allocations=true&locks=true&durationSeconds=300
+     */
+    @PostMapping("/start")
+    public ResponseEntity<Object> start(
+            @RequestParam(value = "profile", defaultValue = "default") String profile,
+            @RequestParam(value = "allocations", defaultValue = "false") boolean allocations,
+            @RequestParam(value = "locks", defaultValue = "false") boolean locks,
+            @RequestParam(value = "durationSeconds", required = false) Long durationSeconds) {
+        Duration duration = durationSeconds != null ? Duration.ofSeconds(durationSeconds) : null;
+        try {
+            return ResponseEntity.ok(profilingService.start(profile, allocations, locks, duration));
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            return error(HttpStatus.BAD_REQUEST, "Cannot start recording with profile '" + profile + "': " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<Object> stop() {
+        try {
+            return ResponseEntity.ok(profilingService.stop());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    /**
+     * Download the data recorded so far as a .jfr file (the recording keeps running)
+     */
+    @GetMapping("/dump")
+    public ResponseEntity<StreamingResponseBody> dump() {
+        Path file;
+        try {
+            file = profilingService.dump();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Cannot dump recording: " + e.getMessage());
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .body(body);
+    }
+
+    private ResponseEntity<Object> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Map.of("message", message));
+    }
+}
@@ -97,8 +97,11 @@ public class AuthFilter implements Filter {
             return;
         }
         
-        // Store user info in thread-local context for later use
-        UserContext.setCurrentUser(new UserContext(username, role));
+        // Store user info in thread-local context for later use, and on the request for filters
+        // that must not trust client-sent x-user/x-role headers (skipped routes pass them through)
+        UserContext user = new UserContext(userId, username, role);
+        UserContext.setCurrentUser(user);
+        httpRequest.setAttribute(UserContext.REQUEST_ATTRIBUTE, user);
         
         // Create a wrapper to add the headers to the downstream request
         HeaderAddingRequestWrapper wrappedRequest = new HeaderAddingRequestWrapper(httpRequest);
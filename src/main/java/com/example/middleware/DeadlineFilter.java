@@ -0,0 +1,35 @@
+package com.example.middleware;
+
+import com.example.service.DeadlineService;
+import com.example.service.RequestDeadline;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * DeadlineFilter starts the request's time budget as soon as it enters the gateway,
+ * so the time spent in later filters (e.g. queued by LoadSheddingFilter) counts
+ * against it. {@link DeadlineService#submit} runs the upstream call with what is left.
+ */
+@Component
+public class DeadlineFilter implements Filter {
+
+    @Autowired
+    private DeadlineService deadlineService;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (request.getAttribute(RequestDeadline.REQUEST_ATTRIBUTE) == null) {
+            deadlineService.start((HttpServletRequest) request);
+        }
+        chain.doFilter(request, response);
+    }
+}
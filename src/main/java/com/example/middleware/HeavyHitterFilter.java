@@ -0,0 +1,38 @@
+package com.example.middleware;
+
+import com.example.analytics.HeavyHitterService;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * HeavyHitterFilter feeds every API request to {@link HeavyHitterService}. It runs
+ * after AuthFilter so the user is known, and before LoadSheddingFilter so shed
+ * requests are counted too.
+ */
+@Component
+public class HeavyHitterFilter implements Filter {
+
+    @Autowired
+    private HeavyHitterService heavyHitterService;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (!"OPTIONS".equals(httpRequest.getMethod())) {
+            // Never the x-user header: guests can send it on routes AuthFilter skips
+            UserContext user = UserContext.fromRequest(httpRequest);
+            heavyHitterService.record(httpRequest.getMethod(), httpRequest.getRequestURI(),
+                    httpRequest.getQueryString(), user != null ? user.getUserId() : null);
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.middleware;
+
+import com.example.service.AdmissionQueue;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LoadSheddingFilter protects the gateway under overload. It runs after AuthFilter
+ * so the request can be classified by route and role, and rejects requests with
+ * 503 when {@link AdmissionQueue} sheds them.
+ */
+@Component
+public class LoadSheddingFilter implements Filter {
+
+    @Autowired
+    private AdmissionQueue admissionQueue;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        // CORS preflight is cheap and must never be shed
+        if ("OPTIONS".equals(httpRequest.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // Never the x-role header: guests can send it on routes AuthFilter skips
+        UserContext user = UserContext.fromRequest(httpRequest);
+        RequestPriority priority = RequestPriority.classify(
+                httpRequest.getMethod(), httpRequest.getRequestURI(), user != null ? user.getRole() : null);
+        if (priority == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = admissionQueue.acquire(priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            sendOverloadedResponse(httpResponse);
+            return;
+        }
+
+        SlotRelease release = new SlotRelease();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Keep the slot until the async request (e.g. a proxied call on a worker thread) completes
+                request.getAsyncContext().addListener(release);
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private void sendOverloadedResponse(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+        response.getWriter().write("{\"message\": \"Gateway overloaded, please retry\"}");
+        response.getWriter().flush();
+    }
+
+    /**
+     * Releases the admission slot exactly once, whichever async event comes first.
+     */
+    private class SlotRelease implements AsyncListener, Runnable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                admissionQueue.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
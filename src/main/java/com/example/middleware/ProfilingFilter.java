@@ -0,0 +1,107 @@
+package com.example.middleware;
+
+import com.example.config.GatewayProperties;
+import com.example.profiling.ProxiedRequestEvent;
+import com.example.service.RouteRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * ProfilingFilter emits a {@link ProxiedRequestEvent} for every API request.
+ * It runs right after AuthFilter (JWT validation has its own event) so the role is
+ * known, and before LoadSheddingFilter so the event includes admission queueing.
+ * When no JFR recording is running, the event is skipped after a single check.
+ */
+@Component
+public class ProfilingFilter implements Filter {
+
+    @Autowired
+    private RouteRegistry routeRegistry;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        ProxiedRequestEvent event = new ProxiedRequestEvent();
+        if (!event.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        event.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Commit once the proxied call running on a worker thread has completed
+                request.getAsyncContext().addListener(new CommitOnCompletion(event, request, response));
+            } else {
+                commit(event, (HttpServletRequest) request, (HttpServletResponse) response);
+            }
+        }
+    }
+
+    private void commit(ProxiedRequestEvent event, HttpServletRequest request, HttpServletResponse response) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.method = request.getMethod();
+        event.path = request.getRequestURI();
+        GatewayProperties.Route route = routeRegistry.resolve(request.getMethod(), request.getRequestURI());
+        event.route = route != null ? route.getPath() : null;
+        UserContext user = UserContext.fromRequest(request);
+        event.role = user != null ? user.getRole() : null;
+        event.status = response.getStatus();
+        event.requestBytes = Math.max(0, request.getContentLengthLong());
+        String contentLength = response.getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                event.responseBytes = Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                event.responseBytes = 0;
+            }
+        }
+        event.commit();
+    }
+
+    private class CommitOnCompletion implements AsyncListener {
+        private final ProxiedRequestEvent event;
+        private final ServletRequest request;
+        private final ServletResponse response;
+
+        CommitOnCompletion(ProxiedRequestEvent event, ServletRequest request, ServletResponse response) {
+            this.event = event;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent asyncEvent) {
+            commit(event, (HttpServletRequest) request, (HttpServletResponse) response);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent asyncEvent) {
+        }
+
+        @Override
+        public void onError(AsyncEvent asyncEvent) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent asyncEvent) {
+            asyncEvent.getAsyncContext().addListener(this);
+        }
+    }
+}
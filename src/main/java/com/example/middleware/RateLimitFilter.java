@@ -0,0 +1,55 @@
+package com.example.middleware;
+
+import com.example.service.RateLimiter;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * RateLimitFilter rejects requests with 429 once a user exceeds the limit enforced
+ * by {@link RateLimiter}. It runs after AuthFilter, which identifies the user;
+ * guests are not limited here.
+ */
+@Component
+public class RateLimitFilter implements Filter {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+
+        // Never the x-user header: guests can send it on routes AuthFilter skips,
+        // and would exhaust another user's quota
+        UserContext user = UserContext.fromRequest(httpRequest);
+        if (user == null || "OPTIONS".equals(httpRequest.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfterSeconds = rateLimiter.acquire(user.getUserId());
+        if (retryAfterSeconds > 0) {
+            sendRateLimitedResponse((HttpServletResponse) response, retryAfterSeconds);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void sendRateLimitedResponse(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setContentType("application/json");
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.getWriter().write("{\"message\": \"Too many requests, please retry later\"}");
+        response.getWriter().flush();
+    }
+}
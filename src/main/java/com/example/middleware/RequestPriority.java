@@ -0,0 +1,44 @@
+package com.example.middleware;
+
+/**
+ * Priority classes used by the load shedder, highest first.
+ * Under overload, lower classes are shed before higher ones.
+ */
+public enum RequestPriority {
+    /** Authentication and moderator/admin writes */
+    CRITICAL,
+    /** Writes by regular authenticated users */
+    HIGH,
+    /** Reads by authenticated users */
+    NORMAL,
+    /** Guest reads */
+    LOW;
+
+    /**
+     * Classifies a request from its route and the role AuthFilter derived from the JWT.
+     * @param role role validated by AuthFilter ({@link UserContext#fromRequest}), null for guests
+     * @return the priority class, or null if the request is not subject to admission control
+     */
+    public static RequestPriority classify(String method, String requestURI, String role) {
+        // Long-lived SSE streams have their own subscriber limit
+        if (requestURI.startsWith("/api/tickets/") && requestURI.endsWith("/comments/stream")) {
+            return null;
+        }
+
+        if (requestURI.startsWith("/api/auth/")) {
+            return CRITICAL;
+        }
+
+        boolean isRead = "GET".equals(method) || "HEAD".equals(method);
+        if (role == null) {
+            return isRead ? LOW : HIGH;
+        }
+        if (isRead) {
+            return NORMAL;
+        }
+        if ("admin".equals(role) || "moderator".equals(role)) {
+            return CRITICAL;
+        }
+        return HIGH;
+    }
+}
@@ -1,19 +1,30 @@
 package com.example.middleware;
 
+import jakarta.servlet.ServletRequest;
+
 /**
  * Holds user information for the current request using ThreadLocal.
  */
 public class UserContext {
+    /** Request attribute holding the user AuthFilter validated, unlike the x-user header clients can send */
+    public static final String REQUEST_ATTRIBUTE = UserContext.class.getName();
+
     private static final ThreadLocal<UserContext> currentUser = new ThreadLocal<>();
 
+    private final String userId;
     private final String username;
     private final String role;
 
-    public UserContext(String username, String role) {
+    public UserContext(String userId, String username, String role) {
+        this.userId = userId;
         this.username = username;
         this.role = role;
     }
 
+    public String getUserId() {
+        return userId;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -33,4 +44,12 @@ public class UserContext {
     public static void clear() {
         currentUser.remove();
     }
+
+    /**
+     * Returns the user AuthFilter validated for this request, null for guests.
+     * Unlike {@link #getCurrentUser()}, also works on async threads.
+     */
+    public static UserContext fromRequest(ServletRequest request) {
+        return (UserContext) request.getAttribute(REQUEST_ATTRIBUTE);
+    }
 }
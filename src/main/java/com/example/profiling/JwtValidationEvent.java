@@ -0,0 +1,25 @@
+package com.example.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a JWT signature and claims validation in JwtService.
+ */
+@Name("com.example.gateway.JwtValidation")
+@Label("JWT Validation")
+@Category({"API Gateway"})
+@Description("Validation of a JWT bearer token")
+@StackTrace(false)
+public class JwtValidationEvent extends Event {
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Token Length")
+    public int tokenLength;
+}
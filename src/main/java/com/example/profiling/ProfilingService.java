@@ -0,0 +1,131 @@
+package com.example.profiling;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts, stops and dumps an on-demand JDK Flight Recorder recording.
+ * Only one recording is active at a time.
+ */
+@Service
+public class ProfilingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingService.class);
+
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+    private final String allocationThrottle;
+    private final Duration lockThreshold;
+
+    private Recording recording;
+
+    public ProfilingService(
+            @Value("${gateway.profiling.max-age:30m}") Duration maxAge,
+            @Value("${gateway.profiling.max-size-mb:100}") long maxSizeMb,
+            @Value("${gateway.profiling.allocation-throttle:150/s}") String allocationThrottle,
+            @Value("${gateway.profiling.lock-threshold:10ms}") Duration lockThreshold) {
+        this.maxAge = maxAge;
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.allocationThrottle = allocationThrottle;
+        this.lockThreshold = lockThreshold;
+    }
+
+    /**
+     * Starts a recording based on a built-in JFR configuration.
+     * @param profile "default" (low overhead) or "profile" (more detail)
+     * @param allocations enable sampled allocation profiling
+     * @param locks enable monitor contention and thread park events
+     * @param duration stop automatically after this long, or null to run until stopped
+     */
+    public synchronized Map<String, Object> start(String profile, boolean allocations, boolean locks, Duration duration)
+            throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        closeRecording();
+
+        Configuration configuration = Configuration.getConfiguration(profile);
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName("gateway-" + profile);
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(maxAge);
+        newRecording.setMaxSize(maxSizeBytes);
+        if (duration != null) {
+            newRecording.setDuration(duration);
+        }
+        if (allocations) {
+            newRecording.enable("jdk.ObjectAllocationSample").with("throttle", allocationThrottle).withStackTrace();
+        }
+        if (locks) {
+            newRecording.enable("jdk.JavaMonitorEnter").withThreshold(lockThreshold).withStackTrace();
+            newRecording.enable("jdk.JavaMonitorWait").withThreshold(lockThreshold).withStackTrace();
+            newRecording.enable("jdk.ThreadPark").withThreshold(lockThreshold).withStackTrace();
+        }
+        newRecording.start();
+        recording = newRecording;
+        logger.info("Started JFR recording {} (profile={}, allocations={}, locks={})",
+                newRecording.getId(), profile, allocations, locks);
+        return status();
+    }
+
+    /**
+     * Stops the running recording; its data stays available for {@link #dump()}.
+     */
+    public synchronized Map<String, Object> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No recording is running");
+        }
+        recording.stop();
+        logger.info("Stopped JFR recording {}", recording.getId());
+        return status();
+    }
+
+    /**
+     * Writes the recorded data so far to a temporary .jfr file. The caller deletes it.
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null || recording.getState() == RecordingState.NEW) {
+            throw new IllegalStateException("No recording to dump");
+        }
+        Path file = Files.createTempFile("gateway-" + recording.getId() + "-", ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("id", recording.getId());
+        status.put("name", recording.getName());
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime() != null ? recording.getStartTime().toString() : null);
+        status.put("duration", recording.getDuration() != null ? recording.getDuration().toString() : null);
+        status.put("size", recording.getSize());
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering a whole request through the gateway, from the first filter
+ * until the response is complete (including async processing).
+ */
+@Name("com.example.gateway.ProxiedRequest")
+@Label("Proxied Request")
+@Category({"API Gateway"})
+@Description("Request handled by the API gateway")
+@StackTrace(false)
+public class ProxiedRequestEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Route")
+    @Description("Path pattern of the matched gateway route, if any")
+    public String route;
+
+    @Label("Role")
+    public String role;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Request Bytes")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount
+    public long responseBytes;
+}
@@ -0,0 +1,55 @@
+package com.example.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one HTTP exchange between the gateway and a backend service.
+ */
+@Name("com.example.gateway.UpstreamExchange")
+@Label("Upstream Exchange")
+@Category({"API Gateway"})
+@Description("HTTP call from the API gateway to a backend service")
+@StackTrace(false)
+public class UpstreamExchangeEvent extends Event {
+
+    @Label("Upstream")
+    @Description("Host and port of the backend service")
+    public String upstream;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    @Description("HTTP status, or 0 if no response was received")
+    public int status;
+
+    @Label("Request Bytes")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Projected")
+    @Description("Whether the response was reshaped by a JSON projection")
+    public boolean projected;
+
+    @Label("Remaining Budget")
+    @Description("Time left before the request deadline when the call started, or -1 if none")
+    @Timespan(Timespan.MILLISECONDS)
+    public long remainingBudget;
+
+    @Label("Error")
+    public String error;
+}
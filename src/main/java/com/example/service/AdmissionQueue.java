@@ -0,0 +1,227 @@
+package com.example.service;
+
+import com.example.middleware.RequestPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Priority-aware admission control for the gateway, using CoDel-style queue delay.
+ *
+ * At most maxConcurrent requests are in flight; the rest wait in one queue per
+ * priority class and freed slots are always handed to the highest class first.
+ * Every interval the minimum queueing delay of admitted requests is compared
+ * with the target: if even the fastest request waited longer than the target,
+ * there is a standing queue and the gateway is overloaded. While overloaded,
+ * LOW requests are shed immediately, NORMAL requests may wait only up to the
+ * target, and HIGH/CRITICAL requests keep their longer waiting budgets.
+ */
+@Service
+public class AdmissionQueue {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final long criticalMaxWaitNanos;
+
+    private final Map<RequestPriority, ArrayDeque<Waiter>> waiting = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Counter> admittedCounters = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Counter> shedCounters = new EnumMap<>(RequestPriority.class);
+
+    // Guarded by this
+    private int inFlight;
+    private int queued;
+    private boolean overloaded;
+    private long intervalEnd;
+    private long minDelayInInterval = Long.MAX_VALUE;
+
+    public AdmissionQueue(
+            MeterRegistry meterRegistry,
+            @Value("${gateway.overload.max-concurrent:100}") int maxConcurrent,
+            @Value("${gateway.overload.max-queued:500}") int maxQueued,
+            @Value("${gateway.overload.target-ms:5}") long targetMs,
+            @Value("${gateway.overload.interval-ms:100}") long intervalMs,
+            @Value("${gateway.overload.critical-max-wait-ms:1000}") long criticalMaxWaitMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMs);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.criticalMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(criticalMaxWaitMs);
+        this.intervalEnd = System.nanoTime() + intervalNanos;
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            String tag = priority.name().toLowerCase();
+            waiting.put(priority, new ArrayDeque<>());
+            admittedCounters.put(priority, Counter.builder("gateway.overload.admitted")
+                    .description("Requests admitted by the load shedder")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            shedCounters.put(priority, Counter.builder("gateway.overload.shed")
+                    .description("Requests rejected with 503 by the load shedder")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("gateway.overload.in_flight", this, q -> q.snapshot(0)).register(meterRegistry);
+        Gauge.builder("gateway.overload.queued", this, q -> q.snapshot(1)).register(meterRegistry);
+        Gauge.builder("gateway.overload.overloaded", this, q -> q.snapshot(2)).register(meterRegistry);
+    }
+
+    /**
+     * Waits for an execution slot.
+     * @return true if admitted (caller must call {@link #release()}), false if the request was shed
+     */
+    public boolean acquire(RequestPriority priority) throws InterruptedException {
+        long now = System.nanoTime();
+        Waiter waiter;
+        long maxWait;
+
+        synchronized (this) {
+            rollInterval(now);
+            if (inFlight < maxConcurrent && queued == 0) {
+                inFlight++;
+                recordDelay(0);
+                admittedCounters.get(priority).increment();
+                return true;
+            }
+
+            maxWait = maxWait(priority);
+            if (maxWait <= 0 || (queued >= maxQueued && !evictLowerThan(priority))) {
+                shedCounters.get(priority).increment();
+                return false;
+            }
+            waiter = new Waiter(now);
+            waiting.get(priority).addLast(waiter);
+            queued++;
+        }
+
+        try {
+            waiter.latch.await(maxWait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                if (waiter.granted) {
+                    release();
+                } else {
+                    dequeue(priority, waiter);
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (waiter.granted) {
+                // The slot was handed to us even if the wait timed out at the same moment
+                recordDelay(System.nanoTime() - waiter.enqueuedAt);
+                admittedCounters.get(priority).increment();
+                return true;
+            }
+            dequeue(priority, waiter);
+            shedCounters.get(priority).increment();
+            return false;
+        }
+    }
+
+    /**
+     * Frees an execution slot, handing it directly to the highest-priority waiter.
+     */
+    public synchronized void release() {
+        for (RequestPriority priority : RequestPriority.values()) {
+            Waiter next = waiting.get(priority).pollFirst();
+            if (next != null) {
+                queued--;
+                next.granted = true;
+                next.latch.countDown();
+                return;
+            }
+        }
+        inFlight--;
+    }
+
+    private long maxWait(RequestPriority priority) {
+        switch (priority) {
+            case CRITICAL:
+                return criticalMaxWaitNanos;
+            case HIGH:
+                return overloaded ? intervalNanos : 2 * intervalNanos;
+            case NORMAL:
+                return overloaded ? targetNanos : intervalNanos;
+            default:
+                return overloaded ? 0 : intervalNanos;
+        }
+    }
+
+    /**
+     * Makes room in a full queue by shedding the newest waiter of a lower class.
+     */
+    private boolean evictLowerThan(RequestPriority priority) {
+        RequestPriority[] priorities = RequestPriority.values();
+        for (int i = priorities.length - 1; i > priority.ordinal(); i--) {
+            Iterator<Waiter> it = waiting.get(priorities[i]).descendingIterator();
+            if (it.hasNext()) {
+                Waiter victim = it.next();
+                it.remove();
+                queued--;
+                victim.evicted = true;
+                victim.latch.countDown();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dequeue(RequestPriority priority, Waiter waiter) {
+        if (!waiter.evicted && waiting.get(priority).remove(waiter)) {
+            queued--;
+        }
+    }
+
+    private void recordDelay(long delayNanos) {
+        minDelayInInterval = Math.min(minDelayInInterval, delayNanos);
+    }
+
+    private void rollInterval(long now) {
+        if (now < intervalEnd) {
+            return;
+        }
+        if (minDelayInInterval == Long.MAX_VALUE) {
+            // Nothing was admitted during the interval: overloaded only if requests are stuck waiting
+            overloaded = queued > 0;
+        } else {
+            overloaded = minDelayInInterval > targetNanos;
+        }
+        minDelayInInterval = Long.MAX_VALUE;
+        intervalEnd = now + intervalNanos;
+    }
+
+    private synchronized double snapshot(int field) {
+        switch (field) {
+            case 0:
+                return inFlight;
+            case 1:
+                return queued;
+            default:
+                return overloaded ? 1 : 0;
+        }
+    }
+
+    private static class Waiter {
+        final long enqueuedAt;
+        final CountDownLatch latch = new CountDownLatch(1);
+        // Guarded by the AdmissionQueue monitor
+        boolean granted;
+        boolean evicted;
+
+        Waiter(long enqueuedAt) {
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Consumes the comment outcome events published by comments-service once a change
+ * is committed, and hands them to {@link CommentStreamService} for delivery to SSE
+ * subscribers. Only whitelisted fields are forwarded, since the stream is public.
+ */
+@Component
+public class CommentEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentEventListener.class);
+
+    private static final String ROUTING_KEY_PREFIX = "comment.";
+
+    private static final List<String> FORWARDED_FIELDS =
+            List.of("id", "ticket_id", "author_id", "comment_text", "creation_date");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private CommentStreamService commentStreamService;
+
+    @RabbitListener(queues = "#{commentStreamQueue.name}")
+    public void onCommentEvent(Message message) {
+        String routingKey = message.getMessageProperties().getReceivedRoutingKey();
+        if (routingKey == null || !routingKey.startsWith(ROUTING_KEY_PREFIX)) {
+            return;
+        }
+        String eventType = routingKey.substring(ROUTING_KEY_PREFIX.length());
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+
+        try {
+            JsonNode event = objectMapper.readTree(payload);
+            JsonNode ticketId = event.get("ticket_id");
+            if (ticketId == null || ticketId.isNull()) {
+                logger.debug("Dropping {} event without ticket_id", routingKey);
+                return;
+            }
+            ObjectNode forwarded = objectMapper.createObjectNode();
+            for (String field : FORWARDED_FIELDS) {
+                if (event.has(field)) {
+                    forwarded.set(field, event.get(field));
+                }
+            }
+            commentStreamService.publish(ticketId.asText(), eventType, forwarded.toString());
+        } catch (Exception e) {
+            logger.warn("Ignoring malformed {} event: {}", routingKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans comment events out to Server-Sent Events subscribers, grouped by ticket.
+ *
+ * Connections are held by the servlet container in async mode, so idle
+ * subscribers cost no threads. Each event is serialized once and shared by all
+ * subscribers of the ticket. Every subscriber has a small bounded buffer that is
+ * drained by a shared dispatch pool with non-blocking writes: a client that stops
+ * reading never holds a dispatch thread, its frames just stay in its buffer. A
+ * subscriber whose buffer is full is too slow to keep up and gets disconnected
+ * (the client reconnects and refetches).
+ */
+@Service
+public class CommentStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentStreamService.class);
+
+    private static final byte[] CONNECTED_FRAME = ":connected\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] KEEPALIVE_FRAME = ":keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Set<Subscriber>> subscribersByTicket = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong eventIds = new AtomicLong();
+    private final AtomicLong slowConsumersDropped = new AtomicLong();
+
+    private final int maxSubscribers;
+    private final int subscriberBuffer;
+    private final long streamTimeoutMs;
+    private final ExecutorService dispatcher;
+    private final ScheduledExecutorService heartbeat;
+
+    public CommentStreamService(
+            @Value("${comments.stream.max-subscribers:10000}") int maxSubscribers,
+            @Value("${comments.stream.subscriber-buffer:32}") int subscriberBuffer,
+            @Value("${comments.stream.timeout-ms:1800000}") long streamTimeoutMs,
+            @Value("${comments.stream.heartbeat-interval-ms:25000}") long heartbeatIntervalMs,
+            @Value("${comments.stream.dispatch-threads:4}") int dispatchThreads) {
+        this.maxSubscribers = maxSubscribers;
+        this.subscriberBuffer = subscriberBuffer;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, daemonThreads("comment-stream-dispatch"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemonThreads("comment-stream-heartbeat"));
+        this.heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Puts the request in async mode and registers it as a subscriber for the given ticket.
+     * @return false if the gateway is at capacity (nothing was written to the response)
+     */
+    public boolean subscribe(String ticketId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(streamTimeoutMs);
+
+        Subscriber subscriber = new Subscriber(ticketId, asyncContext, response.getOutputStream(), subscriberBuffer);
+        subscribersByTicket.compute(ticketId, (id, subscribers) -> {
+            Set<Subscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        asyncContext.addListener(subscriber);
+
+        // Flush the response headers right away so the client knows the stream is open
+        subscriber.enqueue(CONNECTED_FRAME);
+        // The container calls onWritePossible once the listener is set, which starts draining
+        subscriber.out.setWriteListener(subscriber);
+        return true;
+    }
+
+    /**
+     * Pushes a comment event to every subscriber of the ticket.
+     */
+    public void publish(String ticketId, String eventType, String payloadJson) {
+        Set<Subscriber> subscribers = subscribersByTicket.get(ticketId);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+
+        // Serialize once, share the frame between all subscribers
+        StringBuilder frame = new StringBuilder()
+                .append("id:").append(eventIds.incrementAndGet()).append('\n')
+                .append("event:comment.").append(eventType).append('\n');
+        for (String line : payloadJson.split("\n")) {
+            frame.append("data:").append(line).append('\n');
+        }
+        byte[] bytes = frame.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+
+        for (Subscriber subscriber : subscribers) {
+            offer(subscriber, bytes);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public long getSlowConsumersDropped() {
+        return slowConsumersDropped.get();
+    }
+
+    private void sendHeartbeat() {
+        for (Set<Subscriber> subscribers : subscribersByTicket.values()) {
+            for (Subscriber subscriber : subscribers) {
+                offer(subscriber, KEEPALIVE_FRAME);
+            }
+        }
+    }
+
+    private void offer(Subscriber subscriber, byte[] frame) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (subscriber.enqueue(frame)) {
+            schedule(subscriber);
+        } else {
+            // Buffer full: the client is not reading fast enough. Nothing is blocked on
+            // it, so completing the request just releases the connection.
+            slowConsumersDropped.incrementAndGet();
+            logger.debug("Disconnecting slow comment stream subscriber for ticket {}", subscriber.ticketId);
+            close(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * Writes queued frames while the connection accepts them without blocking. When it
+     * doesn't, the container calls {@link Subscriber#onWritePossible()} once it does.
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            subscriber.write();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away, or the request is already complete
+            close(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // A frame may have been queued after the write loop exited but before the flag was cleared
+        if (!subscriber.closed && subscriber.isWritable() && !subscriber.pending.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            try {
+                subscriber.asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+    }
+
+    /**
+     * @return true if this call removed the subscriber
+     */
+    private boolean remove(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return false;
+            }
+            subscriber.closed = true;
+        }
+        subscriber.pending.clear();
+        subscribersByTicket.computeIfPresent(subscriber.ticketId, (id, subscribers) -> {
+            if (subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        for (Set<Subscriber> subscribers : subscribersByTicket.values()) {
+            for (Subscriber subscriber : subscribers) {
+                close(subscriber);
+            }
+        }
+        subscribersByTicket.clear();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private class Subscriber implements WriteListener, AsyncListener {
+        final String ticketId;
+        final AsyncContext asyncContext;
+        final ServletOutputStream out;
+        final ArrayBlockingQueue<byte[]> pending;
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+        /** Set once the container has called onWritePossible, writes before that are not allowed */
+        volatile boolean writable;
+        /** Frames written since the last flush; guarded by this */
+        private boolean unflushed;
+
+        Subscriber(String ticketId, AsyncContext asyncContext, ServletOutputStream out, int capacity) {
+            this.ticketId = ticketId;
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.pending = new ArrayBlockingQueue<>(capacity);
+        }
+
+        boolean enqueue(byte[] frame) {
+            return !closed && pending.offer(frame);
+        }
+
+        boolean isWritable() {
+            return writable;
+        }
+
+        /**
+         * Never blocks: stops as soon as the stream is not ready. Serialized with the
+         * container's onWritePossible calls.
+         */
+        synchronized void write() throws IOException {
+            if (!writable) {
+                return;
+            }
+            while (!closed && out.isReady()) {
+                byte[] frame = pending.poll();
+                if (frame != null) {
+                    out.write(frame);
+                    unflushed = true;
+                } else if (unflushed) {
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            writable = true;
+            schedule(this);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            remove(this);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close(this);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            remove(this);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
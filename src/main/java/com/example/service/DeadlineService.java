@@ -0,0 +1,167 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs proxied calls under a per-route time budget.
+ *
+ * Each request gets an absolute deadline when it enters the gateway (DeadlineFilter
+ * runs ahead of the load shedder), so time spent queueing counts against the
+ * budget. The call runs as an async MVC task limited to the remaining budget, so
+ * the deadline passing or an async error reported by the container is seen while
+ * the upstream call is still in progress; either one aborts the upstream call.
+ * Timed-out and cancelled requests are counted per upstream, together with the
+ * time spent on them since they entered the gateway (wasted work).
+ *
+ * A client that closes its connection while the upstream call is in progress is
+ * not detected: over HTTP/1.1 the container only notices when it next reads or
+ * writes, which is when the response is sent. The call runs until the upstream
+ * responds or the deadline passes.
+ */
+@Service
+public class DeadlineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineService.class);
+
+    @Autowired
+    private GatewayProperties gatewayProperties;
+
+    @Autowired
+    private RouteRegistry routeRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("upstreamExecutor")
+    private ThreadPoolTaskExecutor upstreamExecutor;
+
+    /**
+     * Runs the upstream call for the request within its route's time budget.
+     * @param upstream name of the backend service, used to tag metrics
+     */
+    public WebAsyncTask<ResponseEntity<String>> submit(HttpServletRequest request, String upstream,
+                                                       Callable<ResponseEntity<String>> call) {
+        RequestDeadline started = (RequestDeadline) request.getAttribute(RequestDeadline.REQUEST_ATTRIBUTE);
+        RequestDeadline deadline = started != null ? started : start(request);
+        deadline.setUpstream(upstream);
+
+        long remainingMillis = deadline.remainingMillis();
+        if (remainingMillis <= 0) {
+            // Used up before reaching the controller, e.g. waiting in the load-shedding queue
+            record(deadline, "timeout");
+            return completed(timeoutResponse());
+        }
+
+        WebAsyncTask<ResponseEntity<String>> task = new WebAsyncTask<>(remainingMillis, upstreamExecutor, () -> {
+            if (deadline.isCancelled() || deadline.isExpired()) {
+                // Expired while waiting for a worker, don't start upstream work
+                record(deadline, "timeout");
+                return timeoutResponse();
+            }
+            RequestDeadline.setCurrent(deadline);
+            try {
+                ResponseEntity<String> response = call.call();
+                if (deadline.isExpired() && response.getStatusCode().is5xxServerError()) {
+                    // The upstream call was cut short by the deadline
+                    record(deadline, "timeout");
+                    return timeoutResponse();
+                }
+                return response;
+            } finally {
+                RequestDeadline.clear();
+            }
+        });
+
+        task.onTimeout(() -> {
+            deadline.cancel();
+            record(deadline, "timeout");
+            return timeoutResponse();
+        });
+        task.onError(() -> {
+            // Most likely the client went away; nobody will read the response
+            deadline.cancel();
+            record(deadline, "cancelled");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"error\":\"Request cancelled\"}");
+        });
+        return task;
+    }
+
+    /**
+     * Starts the request's time budget (route timeout, or a tighter one asked for by
+     * the caller) and stores it on the request for {@link #submit}.
+     */
+    public RequestDeadline start(HttpServletRequest request) {
+        RequestDeadline deadline = new RequestDeadline(budgetMillis(request));
+        request.setAttribute(RequestDeadline.REQUEST_ATTRIBUTE, deadline);
+        return deadline;
+    }
+
+    /**
+     * Wraps an already computed response (e.g. CORS preflight) in a task.
+     */
+    public WebAsyncTask<ResponseEntity<String>> completed(ResponseEntity<String> response) {
+        return new WebAsyncTask<>(() -> response);
+    }
+
+    private long budgetMillis(HttpServletRequest request) {
+        GatewayProperties.Route route = routeRegistry.resolve(request.getMethod(), request.getRequestURI());
+        long budget = route != null && route.getTimeout() != null
+                ? route.getTimeout().toMillis()
+                : gatewayProperties.getDefaultTimeout().toMillis();
+
+        // A caller may ask for a tighter budget (never a larger one)
+        String clientBudget = request.getHeader(RequestDeadline.BUDGET_HEADER);
+        if (clientBudget != null) {
+            try {
+                budget = Math.min(budget, Math.max(1, Long.parseLong(clientBudget.trim())));
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring invalid {} header: {}", RequestDeadline.BUDGET_HEADER, clientBudget);
+            }
+        }
+        return budget;
+    }
+
+    private void record(RequestDeadline deadline, String outcome) {
+        if (!deadline.markAbandoned()) {
+            return;
+        }
+        Counter.builder("gateway.upstream.abandoned")
+                .description("Proxied requests abandoned because of a timeout or a client disconnect")
+                .tag("upstream", deadline.getUpstream())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        Timer.builder("gateway.upstream.wasted")
+                .description("Time spent on proxied requests whose response was never delivered")
+                .tag("upstream", deadline.getUpstream())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(deadline.elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static ResponseEntity<String> timeoutResponse() {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"error\":\"Gateway timeout: upstream did not respond within the time budget\"}");
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import com.example.middleware.UserContext;
+import com.example.sharedstate.SharedStateSync;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deduplicates retried writes that carry an Idempotency-Key header, on routes
+ * with idempotency enabled.
+ *
+ * Keys are scoped to the user validated by AuthFilter. The first request with
+ * a key is forwarded; duplicates arriving while it is in flight wait for its
+ * response, and later duplicates get the stored response without calling the
+ * upstream. Responses are kept for up to the TTL in a store bounded to
+ * max-entries: when it is full the oldest completed entries are dropped first,
+ * and entries still in flight are never dropped (so the store may exceed the
+ * bound by the number of requests in progress). Server errors are not stored,
+ * so the client can retry them.
+ *
+ * Stored responses are also broadcast to the other gateway replicas through
+ * {@link SharedStateSync}, so a retry that lands on another replica is deduplicated
+ * too once the broadcast has arrived (typically within one flush interval).
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    /** Set on responses replayed from the store */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String SHARED_CHANNEL = "gateway:idempotency";
+    /** Larger responses are only stored locally */
+    private static final int MAX_SHARED_BODY_LENGTH = 64 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final RouteRegistry routeRegistry;
+    private final MeterRegistry meterRegistry;
+    private final SharedStateSync sharedState;
+    private final long ttlNanos;
+    private final int maxEntries;
+    /** Insertion-ordered so the oldest entries are evicted first; guarded by this */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyService(RouteRegistry routeRegistry, MeterRegistry meterRegistry, SharedStateSync sharedState,
+                              @Value("${gateway.idempotency.max-entries:10000}") int maxEntries,
+                              @Value("${gateway.idempotency.ttl:24h}") Duration ttl) {
+        this.routeRegistry = routeRegistry;
+        this.meterRegistry = meterRegistry;
+        this.sharedState = sharedState;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        Gauge.builder("gateway.idempotency.entries", this, IdempotencyService::size)
+                .description("Idempotency keys currently stored")
+                .register(meterRegistry);
+        sharedState.subscribe(SHARED_CHANNEL, this::adoptShared);
+    }
+
+    /**
+     * Wraps the upstream call of a request so duplicates of it are not forwarded twice.
+     * Returns the call unchanged when the request has no key, no user or its route
+     * does not enable idempotency.
+     */
+    public Callable<ResponseEntity<String>> wrap(HttpServletRequest request, String body,
+                                                 Callable<ResponseEntity<String>> call) {
+        String key = request.getHeader(KEY_HEADER);
+        if (key == null || key.isBlank()) {
+            return call;
+        }
+        GatewayProperties.Route route = routeRegistry.resolve(request.getMethod(), request.getRequestURI());
+        if (route == null || !route.getIdempotency().isEnabled()) {
+            return call;
+        }
+        // Never the x-user header: guests can send it on routes AuthFilter skips
+        UserContext user = UserContext.fromRequest(request);
+        if (user == null) {
+            return call;
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return () -> error(HttpStatus.BAD_REQUEST, KEY_HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String scopedKey = user.getUserId() + ":" + key;
+        String fingerprint = fingerprint(request, body);
+        return () -> execute(scopedKey, fingerprint, route.getName(), call);
+    }
+
+    private ResponseEntity<String> execute(String key, String fingerprint, String route,
+                                           Callable<ResponseEntity<String>> call) throws Exception {
+        Entry entry = new Entry(fingerprint, System.nanoTime() + ttlNanos);
+        Entry existing = claim(key, entry);
+
+        if (existing == null) {
+            count(route, "executed");
+            ResponseEntity<String> response;
+            try {
+                response = call.call();
+            } catch (Exception e) {
+                remove(key, entry);
+                entry.response.completeExceptionally(e);
+                throw e;
+            }
+            if (!isStorable(response)) {
+                remove(key, entry);
+            } else {
+                share(key, entry, response);
+            }
+            entry.response.complete(response);
+            return response;
+        }
+
+        if (!existing.fingerprint.equals(fingerprint)) {
+            count(route, "mismatch");
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, KEY_HEADER + " was already used for a different request");
+        }
+        if (existing.response.isDone()) {
+            count(route, "replayed");
+            return replay(existing.response.join());
+        }
+
+        // The original request is still in flight, wait for it within our own budget
+        RequestDeadline deadline = RequestDeadline.getCurrent();
+        long waitMillis = deadline != null ? Math.max(1, deadline.remainingMillis()) : TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+        try {
+            ResponseEntity<String> response = existing.response.get(waitMillis, TimeUnit.MILLISECONDS);
+            count(route, "waited");
+            return replay(response);
+        } catch (TimeoutException e) {
+            count(route, "in_progress");
+            return error(HttpStatus.CONFLICT, "A request with this " + KEY_HEADER + " is still in progress");
+        } catch (ExecutionException e) {
+            count(route, "waited");
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Registers the entry unless a live one exists for the key.
+     * @return the existing entry, or null if the caller now owns the key
+     */
+    private synchronized Entry claim(String key, Entry entry) {
+        long now = System.nanoTime();
+        evictExpired(now);
+        Entry existing = entries.get(key);
+        if (existing != null && !existing.isExpired(now)) {
+            return existing;
+        }
+        // Remove first so the new entry moves to the end of the eviction order
+        entries.remove(key);
+        entries.put(key, entry);
+        evictOverCapacity();
+        return null;
+    }
+
+    /**
+     * Stores an entry completed by another replica, unless this replica has a live one.
+     */
+    private synchronized void adopt(String key, Entry entry) {
+        long now = System.nanoTime();
+        evictExpired(now);
+        Entry existing = entries.get(key);
+        if (existing == null || existing.isExpired(now)) {
+            entries.remove(key);
+            entries.put(key, entry);
+            evictOverCapacity();
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        entries.remove(key, entry);
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops expired entries from the head; entries are in creation order, and so in expiry order.
+     */
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.isExpired(now)) {
+                break;
+            }
+            if (entry.response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest completed entries while the store is over capacity. Entries
+     * still in flight are skipped: dropping one would let a duplicate through.
+     */
+    private void evictOverCapacity() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            if (iterator.next().response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Final outcomes are stored; server errors and "try again" statuses are not, so a retry goes upstream.
+     */
+    private void share(String key, Entry entry, ResponseEntity<String> response) {
+        String body = response.getBody();
+        if (body != null && body.length() > MAX_SHARED_BODY_LENGTH) {
+            return;
+        }
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("key", key);
+        message.put("fingerprint", entry.fingerprint);
+        message.put("ttlMillis", TimeUnit.NANOSECONDS.toMillis(entry.expiresAt - System.nanoTime()));
+        message.put("status", response.getStatusCode().value());
+        MediaType contentType = response.getHeaders().getContentType();
+        message.put("contentType", contentType != null ? contentType.toString() : null);
+        message.put("body", body);
+        sharedState.publish(SHARED_CHANNEL, message.toString());
+    }
+
+    private void adoptShared(String payload) {
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(payload);
+        } catch (IOException e) {
+            logger.warn("Ignoring malformed shared idempotency entry: {}", e.getMessage());
+            return;
+        }
+        long ttlMillis = message.path("ttlMillis").asLong();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (message.hasNonNull("contentType")) {
+            headers.setContentType(MediaType.parseMediaType(message.get("contentType").asText()));
+        }
+        String body = message.hasNonNull("body") ? message.get("body").asText() : null;
+        ResponseEntity<String> response = new ResponseEntity<>(body, headers, HttpStatus.valueOf(message.path("status").asInt()));
+
+        Entry entry = new Entry(message.path("fingerprint").asText(),
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+        entry.response.complete(response);
+        adopt(message.path("key").asText(), entry);
+    }
+
+    private static boolean isStorable(ResponseEntity<String> response) {
+        int status = response.getStatusCode().value();
+        return status < 500 && status != 408 && status != 409 && status != 429;
+    }
+
+    private static ResponseEntity<String> replay(ResponseEntity<String> response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    /**
+     * Identifies the request a key was first used with, so reusing the key for another request is rejected.
+     */
+    private static String fingerprint(HttpServletRequest request, String body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            if (body != null) {
+                digest.update(body.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void count(String route, String outcome) {
+        Counter.builder("gateway.idempotency.requests")
+                .description("Requests carrying an Idempotency-Key, by outcome")
+                .tag("route", route)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static ResponseEntity<String> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"error\":\"" + message + "\"}");
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<ResponseEntity<String>> response = new CompletableFuture<>();
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Field projection and page slicing for JSON list responses.
+ *
+ * The upstream body is transformed token by token with a streaming parser and
+ * generator, so no tree is built: skipped elements and fields are never
+ * materialized, and memory is bounded by the (smaller) output.
+ */
+public class JsonProjection {
+
+    public static final String FIELDS_PARAM = "fields";
+    public static final String OFFSET_PARAM = "offset";
+    public static final String SIZE_PARAM = "size";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final String collection;
+    private final Set<String> fields;
+    private final int offset;
+    private final int size;
+
+    JsonProjection(String collection, Set<String> fields, int offset, int size) {
+        this.collection = collection;
+        this.fields = fields;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Builds the projection requested by the client for a route.
+     * @return the projection, or null if the route doesn't allow it or the client didn't ask for one
+     */
+    public static JsonProjection fromRequest(HttpServletRequest request, GatewayProperties.Route route) {
+        if (route == null || !route.getProjection().isEnabled()) {
+            return null;
+        }
+        String fieldsParam = request.getParameter(FIELDS_PARAM);
+        String offsetParam = request.getParameter(OFFSET_PARAM);
+        String sizeParam = request.getParameter(SIZE_PARAM);
+        if (fieldsParam == null && offsetParam == null && sizeParam == null) {
+            return null;
+        }
+
+        Set<String> fields = null;
+        if (fieldsParam != null && !fieldsParam.isBlank()) {
+            fields = Arrays.stream(fieldsParam.split(","))
+                    .map(String::trim)
+                    .filter(f -> !f.isEmpty())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+        GatewayProperties.Projection config = route.getProjection();
+        int offset = 0;
+        int size = Integer.MAX_VALUE;
+        // Only slice when asked to: ?fields=... alone must not cut the list at max-size
+        if (offsetParam != null || sizeParam != null) {
+            offset = Math.max(0, parseInt(offsetParam, 0));
+            size = Math.min(Math.max(0, parseInt(sizeParam, config.getMaxSize())), config.getMaxSize());
+        }
+        String collection = config.getCollection() == null || config.getCollection().isBlank() ? null : config.getCollection();
+        return new JsonProjection(collection, fields, offset, size);
+    }
+
+    /**
+     * Streams the projected form of the JSON in {@code in} to {@code out}.
+     */
+    public void apply(InputStream in, OutputStream out) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in);
+             JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return;
+            }
+            if (collection == null && token == JsonToken.START_ARRAY) {
+                writeSlice(parser, generator);
+            } else if (collection != null && token == JsonToken.START_OBJECT) {
+                generator.writeStartObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    generator.writeFieldName(name);
+                    if (collection.equals(name) && value == JsonToken.START_ARRAY) {
+                        writeSlice(parser, generator);
+                    } else {
+                        generator.copyCurrentStructure(parser);
+                    }
+                }
+                generator.writeEndObject();
+            } else {
+                // Not the shape this route was configured for: pass it through unchanged
+                generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    /**
+     * Parser is on START_ARRAY; writes the selected elements, projected, and consumes END_ARRAY.
+     */
+    private void writeSlice(JsonParser parser, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        long index = 0;
+        long end = (long) offset + size;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (index < offset || index >= end) {
+                parser.skipChildren();
+            } else if (token == JsonToken.START_OBJECT && fields != null) {
+                writeProjectedObject(parser, generator);
+            } else {
+                generator.copyCurrentStructure(parser);
+            }
+            index++;
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeProjectedObject(JsonParser parser, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (fields.contains(name)) {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.service;
 
+import com.example.profiling.JwtValidationEvent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
@@ -35,15 +36,26 @@ public class JwtService {
      * @return Claims if valid, null if invalid
      */
     public Claims validateToken(String token) {
+        JwtValidationEvent event = new JwtValidationEvent();
+        event.begin();
+        Claims claims = null;
         try {
-            return Jwts.parserBuilder()
+            claims = Jwts.parserBuilder()
                     .setSigningKey(secretKey)
                     .build()
                     .parseClaimsJws(token)
                     .getBody();
+            return claims;
         } catch (JwtException | IllegalArgumentException e) {
             System.err.println("Invalid JWT token: " + e.getMessage());
             return null;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.valid = claims != null;
+                event.tokenLength = token != null ? token.length() : 0;
+                event.commit();
+            }
         }
     }
     
@@ -0,0 +1,62 @@
+package com.example.service;
+
+import com.example.sharedstate.SharedStateSync;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Per-user request limit over fixed time windows. Counters are shared by all
+ * gateway replicas through {@link SharedStateSync}, so the limit applies to the
+ * user's traffic as a whole rather than per replica. Counts from other replicas
+ * arrive with the next flush, so a burst may exceed the limit by what the other
+ * replicas admitted within one flush interval. Opt-in: off unless
+ * gateway.rate-limit.enabled is set.
+ */
+@Service
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "gateway:rate-limit:";
+
+    private final SharedStateSync sharedState;
+    private final boolean enabled;
+    private final long limit;
+    private final long windowMillis;
+    private final Counter rejected;
+
+    public RateLimiter(SharedStateSync sharedState, MeterRegistry meterRegistry,
+                       @Value("${gateway.rate-limit.enabled:false}") boolean enabled,
+                       @Value("${gateway.rate-limit.requests-per-window:600}") long limit,
+                       @Value("${gateway.rate-limit.window:1m}") Duration window) {
+        this.sharedState = sharedState;
+        this.enabled = enabled;
+        this.limit = limit;
+        this.windowMillis = window.toMillis();
+        this.rejected = Counter.builder("gateway.rate_limit.rejected")
+                .description("Requests rejected because the user exceeded the rate limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts a request for the user.
+     * @return 0 if the request is allowed, otherwise the seconds until the window resets
+     */
+    public long acquire(String userId) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long window = now / windowMillis;
+        // Keep the counter a bit past the window end so late flushes still land in it
+        long count = sharedState.increment(KEY_PREFIX + userId + ":" + window, Duration.ofMillis(2 * windowMillis));
+        if (count <= limit) {
+            return 0;
+        }
+        rejected.increment();
+        long resetMillis = (window + 1) * windowMillis - now;
+        return Math.max(1, (resetMillis + 999) / 1000);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Absolute deadline of a proxied request, shared by the thread that performs the
+ * upstream call and the container callbacks that may cancel it (timeout, async
+ * error). It starts when the request enters the gateway and is carried as a
+ * request attribute until the upstream call; the thread performing the call
+ * exposes it through a ThreadLocal so the HTTP client can derive its timeouts
+ * and budget header from it.
+ */
+public class RequestDeadline {
+
+    /** Remaining budget in milliseconds, propagated to upstream services */
+    public static final String BUDGET_HEADER = "X-Request-Budget-Ms";
+
+    /** Request attribute holding the deadline started by DeadlineFilter */
+    public static final String REQUEST_ATTRIBUTE = RequestDeadline.class.getName();
+
+    private static final ThreadLocal<RequestDeadline> current = new ThreadLocal<>();
+
+    private volatile String upstream;
+    private final long startNanos;
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    private final AtomicBoolean abandoned = new AtomicBoolean();
+    private volatile Runnable abortAction;
+
+    public RequestDeadline(long budgetMillis) {
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    /**
+     * Sets the backend the request is proxied to, once the controller has picked it.
+     */
+    public void setUpstream(String upstream) {
+        this.upstream = upstream;
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers how to abort the upstream call currently in progress.
+     */
+    public void onAbort(Runnable action) {
+        this.abortAction = action;
+        if (cancelled) {
+            action.run();
+        }
+    }
+
+    public void clearAbort() {
+        this.abortAction = null;
+    }
+
+    /**
+     * Marks the request as abandoned and aborts the in-progress upstream call, if any.
+     */
+    public void cancel() {
+        cancelled = true;
+        Runnable action = abortAction;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Marks the request as abandoned (timed out or cancelled).
+     * @return true only for the first caller, so the outcome is recorded once
+     */
+    public boolean markAbandoned() {
+        return abandoned.compareAndSet(false, true);
+    }
+
+    public static void setCurrent(RequestDeadline deadline) {
+        current.set(deadline);
+    }
+
+    public static RequestDeadline getCurrent() {
+        return current.get();
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Resolves the configured {@link GatewayProperties.Route} for a request.
+ */
+@Service
+public class RouteRegistry {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private GatewayProperties gatewayProperties;
+
+    /**
+     * @return the first route matching the method and URI, or null if none is configured
+     */
+    public GatewayProperties.Route resolve(String method, String requestURI) {
+        for (GatewayProperties.Route route : gatewayProperties.getRoutes().values()) {
+            if (route.getPath() == null || !pathMatcher.match(route.getPath(), requestURI)) {
+                continue;
+            }
+            if (route.getMethods().isEmpty() || route.getMethods().stream().anyMatch(m -> m.equalsIgnoreCase(method))) {
+                return route;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mirrors a sample of proxied requests to a shadow upstream (e.g. a canary build)
+ * and compares its responses with the primary ones. JSON bodies are compared as
+ * parsed values, so field order, whitespace and number formatting don't count and
+ * the route's ignored fields (timestamps, ids generated per request) are left out;
+ * other bodies must be identical.
+ *
+ * The shadow call is queued only after the primary response is available and runs
+ * on a small dedicated pool, so it never delays the client. Shadow responses are
+ * discarded after comparison. When the queue fills up (the shadow is slow or down),
+ * shadowing suspends itself for a cool-down period instead of piling up work.
+ */
+@Service
+public class ShadowService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowService.class);
+
+    /** Marks mirrored requests so the shadow service can tell them apart */
+    public static final String SHADOW_HEADER = "X-Shadow-Request";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final RestTemplate restTemplate;
+    private final long cooldownNanos;
+    /** nanoTime until which shadowing is suspended, 0 when active */
+    private final AtomicLong suspendedUntil = new AtomicLong();
+
+    public ShadowService(MeterRegistry meterRegistry,
+                         @Value("${gateway.shadow.threads:4}") int threads,
+                         @Value("${gateway.shadow.queue-capacity:200}") int queueCapacity,
+                         @Value("${gateway.shadow.timeout:5s}") Duration timeout,
+                         @Value("${gateway.shadow.cooldown:30s}") Duration cooldown) {
+        this.meterRegistry = meterRegistry;
+        this.cooldownNanos = cooldown.toNanos();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) timeout.toMillis());
+        requestFactory.setReadTimeout((int) timeout.toMillis());
+        this.restTemplate = new RestTemplate(requestFactory);
+        // Error statuses are compared like any other, not thrown
+        this.restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+
+        Gauge.builder("gateway.shadow.queued", executor, e -> e.getQueue().size())
+                .description("Mirrored requests waiting for a shadow worker")
+                .register(meterRegistry);
+        Gauge.builder("gateway.shadow.suspended", this, s -> s.isSuspended() ? 1 : 0)
+                .description("1 while shadowing is suspended because the shadow queue backed up")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decides whether this request is mirrored.
+     * @param serviceUrl base URL of the primary service, replaced by the shadow URL
+     * @param targetUrl full primary URL
+     * @return the shadow request to pass to {@link UpstreamClient}, or null when not sampled
+     */
+    public ShadowRequest sample(GatewayProperties.Route route, String serviceUrl, String targetUrl,
+                                HttpMethod method, HttpEntity<String> entity) {
+        if (route == null || route.getShadow().getUrl() == null || route.getShadow().getPercentage() <= 0) {
+            return null;
+        }
+        GatewayProperties.Shadow shadow = route.getShadow();
+        if (!shadow.isIncludeWrites() && !isRead(method)) {
+            return null;
+        }
+        if (ThreadLocalRandom.current().nextDouble(100) >= shadow.getPercentage()) {
+            return null;
+        }
+        if (isSuspended()) {
+            dropped(route.getName(), "suspended");
+            return null;
+        }
+
+        String shadowUrl = shadow.getUrl() + targetUrl.substring(serviceUrl.length());
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(entity.getHeaders());
+        // The shadow has its own timeout, the client's budget does not apply to it
+        headers.remove(RequestDeadline.BUDGET_HEADER);
+        headers.set(SHADOW_HEADER, "true");
+        return new ShadowRequest(route.getName(), shadowUrl, method, new HttpEntity<>(entity.getBody(), headers),
+                new HashSet<>(shadow.getIgnoredFields()));
+    }
+
+    /**
+     * Queues the shadow call. Never blocks; when the queue is full the request is
+     * dropped and shadowing is suspended.
+     * @param primaryStatus status returned by the primary, or -1 if the primary call failed
+     * @param primaryNanos latency of the primary call
+     */
+    public void mirror(ShadowRequest shadow, JsonProjection projection,
+                       int primaryStatus, String primaryBody, long primaryNanos) {
+        try {
+            executor.execute(() -> compare(shadow, projection, primaryStatus, primaryBody, primaryNanos));
+        } catch (RejectedExecutionException e) {
+            dropped(shadow.route, "queue_full");
+            suspend();
+        }
+    }
+
+    public boolean isSuspended() {
+        long until = suspendedUntil.get();
+        if (until == 0) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        if (suspendedUntil.compareAndSet(until, 0)) {
+            logger.info("Resuming traffic shadowing");
+        }
+        return false;
+    }
+
+    private void suspend() {
+        long until = System.nanoTime() + cooldownNanos;
+        if (suspendedUntil.getAndSet(until) == 0) {
+            logger.warn("Shadow queue is full, suspending traffic shadowing for {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(cooldownNanos));
+        }
+    }
+
+    private void compare(ShadowRequest shadow, JsonProjection projection,
+                         int primaryStatus, String primaryBody, long primaryNanos) {
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            ShadowResponse response = restTemplate.execute(shadow.url, shadow.method,
+                    restTemplate.httpEntityCallback(shadow.entity, String.class),
+                    upstreamResponse -> read(upstreamResponse, projection));
+            latency(shadow.route, "shadow").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (primaryStatus != response.status) {
+                outcome = "status_mismatch";
+            } else if (!bodiesMatch(primaryBody, response.body, shadow.ignoredFields)) {
+                outcome = "body_mismatch";
+            } else {
+                outcome = "match";
+            }
+        } catch (Exception e) {
+            logger.debug("Shadow call to {} failed: {}", shadow.url, e.getMessage());
+            outcome = "error";
+        }
+        latency(shadow.route, "primary").record(primaryNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("gateway.shadow.requests")
+                .description("Mirrored requests by comparison outcome")
+                .tag("route", shadow.route)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Reads the shadow response, applying the primary's projection so bodies are comparable.
+     */
+    private ShadowResponse read(ClientHttpResponse response, JsonProjection projection) throws IOException {
+        int status = response.getStatusCode().value();
+        InputStream body = response.getBody();
+        HttpHeaders headers = response.getHeaders();
+        boolean json = headers.getContentType() != null
+                && headers.getContentType().getSubtype().toLowerCase().contains("json");
+        if (projection != null && response.getStatusCode().is2xxSuccessful() && json) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            projection.apply(body, out);
+            return new ShadowResponse(status, out.toString(StandardCharsets.UTF_8));
+        }
+        return new ShadowResponse(status, StreamUtils.copyToString(body, StandardCharsets.UTF_8));
+    }
+
+    boolean bodiesMatch(String primary, String shadow, Set<String> ignoredFields) {
+        String a = primary != null ? primary : "";
+        String b = shadow != null ? shadow : "";
+        if (a.equals(b)) {
+            return true;
+        }
+        JsonNode primaryJson = parse(a);
+        JsonNode shadowJson = parse(b);
+        if (primaryJson == null || shadowJson == null) {
+            return false;
+        }
+        removeFields(primaryJson, ignoredFields);
+        removeFields(shadowJson, ignoredFields);
+        // 1 and 1.0 are the same number
+        return primaryJson.equals((x, y) -> x.isNumber() && y.isNumber()
+                ? x.decimalValue().compareTo(y.decimalValue())
+                : x.equals(y) ? 0 : 1, shadowJson);
+    }
+
+    /**
+     * @return the parsed body, or null if it is not JSON
+     */
+    private JsonNode parse(String body) {
+        if (body.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static void removeFields(JsonNode node, Collection<String> fields) {
+        if (fields.isEmpty()) {
+            return;
+        }
+        if (node.isObject()) {
+            ((ObjectNode) node).remove(fields);
+        }
+        for (JsonNode child : node) {
+            removeFields(child, fields);
+        }
+    }
+
+    private Timer latency(String route, String target) {
+        return Timer.builder("gateway.shadow.latency")
+                .description("Latency of mirrored requests on the primary and on the shadow upstream")
+                .tag("route", route)
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    private void dropped(String route, String reason) {
+        Counter.builder("gateway.shadow.dropped")
+                .description("Sampled requests that were not mirrored")
+                .tag("route", route)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static boolean isRead(HttpMethod method) {
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A sampled request, ready to be sent to the shadow upstream.
+     */
+    public static class ShadowRequest {
+        private final String route;
+        private final String url;
+        private final HttpMethod method;
+        private final HttpEntity<String> entity;
+        private final Set<String> ignoredFields;
+
+        ShadowRequest(String route, String url, HttpMethod method, HttpEntity<String> entity, Set<String> ignoredFields) {
+            this.route = route;
+            this.url = url;
+            this.method = method;
+            this.entity = entity;
+            this.ignoredFields = ignoredFields;
+        }
+    }
+
+    private static class ShadowResponse {
+        private final int status;
+        private final String body;
+
+        ShadowResponse(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.service;
+
+import com.example.profiling.UpstreamExchangeEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Performs the HTTP exchange with backend services for the gateway controller.
+ * When the calling thread runs under a {@link RequestDeadline}, the call is bounded
+ * by it and the remaining budget is sent upstream in a header.
+ */
+@Service
+public class UpstreamClient {
+
+    private final RestTemplate restTemplate;
+
+    @Autowired
+    private ShadowService shadowService;
+
+    public UpstreamClient() {
+        this.restTemplate = new RestTemplate(new DeadlineAwareRequestFactory());
+        this.restTemplate.getInterceptors().add(this::propagateBudget);
+    }
+
+    /**
+     * Sends the request upstream and returns the response body as a string.
+     * 4xx/5xx responses surface as RestTemplate's HttpStatusCodeException subclasses.
+     * @param projection optional JSON projection applied while reading the response, may be null
+     */
+    public ResponseEntity<String> exchange(String url, HttpMethod method, HttpEntity<String> entity, JsonProjection projection) {
+        return exchange(url, method, entity, projection, null);
+    }
+
+    /**
+     * Same as {@link #exchange(String, HttpMethod, HttpEntity, JsonProjection)}, then hands
+     * the outcome to the shadow service when the request was sampled for mirroring.
+     * @param shadow request to mirror once the primary response is known, may be null
+     */
+    public ResponseEntity<String> exchange(String url, HttpMethod method, HttpEntity<String> entity,
+                                           JsonProjection projection, ShadowService.ShadowRequest shadow) {
+        long startNanos = System.nanoTime();
+        RequestDeadline deadline = RequestDeadline.getCurrent();
+        long budgetAtStart = deadline != null ? deadline.remainingMillis() : -1;
+        UpstreamExchangeEvent event = new UpstreamExchangeEvent();
+        event.begin();
+        ResponseEntity<String> response = null;
+        RuntimeException failure = null;
+        try {
+            if (projection == null) {
+                response = restTemplate.exchange(url, method, entity, String.class);
+            } else {
+                response = restTemplate.execute(url, method, restTemplate.httpEntityCallback(entity, String.class),
+                        upstreamResponse -> readProjected(upstreamResponse, projection));
+            }
+            return response;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (deadline != null) {
+                deadline.clearAbort();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                commitExchangeEvent(event, url, method, entity, projection, budgetAtStart, response, failure);
+            }
+            if (shadow != null) {
+                mirror(shadow, projection, response, failure, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private void mirror(ShadowService.ShadowRequest shadow, JsonProjection projection, ResponseEntity<String> response,
+                        RuntimeException failure, long primaryNanos) {
+        if (response != null) {
+            shadowService.mirror(shadow, projection, response.getStatusCode().value(), response.getBody(), primaryNanos);
+        } else if (failure instanceof HttpStatusCodeException) {
+            HttpStatusCodeException statusException = (HttpStatusCodeException) failure;
+            shadowService.mirror(shadow, projection, statusException.getStatusCode().value(),
+                    statusException.getResponseBodyAsString(), primaryNanos);
+        } else {
+            shadowService.mirror(shadow, projection, -1, null, primaryNanos);
+        }
+    }
+
+    private void commitExchangeEvent(UpstreamExchangeEvent event, String url, HttpMethod method, HttpEntity<String> entity,
+                                     JsonProjection projection, long budgetAtStart,
+                                     ResponseEntity<String> response, RuntimeException failure) {
+        URI uri = URI.create(url);
+        event.upstream = uri.getPort() > 0 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+        event.method = method.name();
+        event.path = uri.getRawPath();
+        event.requestBytes = byteLength(entity.getBody());
+        event.projected = projection != null;
+        event.remainingBudget = budgetAtStart;
+        if (response != null) {
+            event.status = response.getStatusCode().value();
+            event.responseBytes = byteLength(response.getBody());
+        } else if (failure instanceof HttpStatusCodeException) {
+            HttpStatusCodeException statusException = (HttpStatusCodeException) failure;
+            event.status = statusException.getStatusCode().value();
+            event.responseBytes = statusException.getResponseBodyAsByteArray().length;
+        } else if (failure != null) {
+            event.error = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+        }
+        event.commit();
+    }
+
+    /**
+     * Tells the upstream how much of the budget is left, and skips the call if none is.
+     */
+    private ClientHttpResponse propagateBudget(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        RequestDeadline deadline = RequestDeadline.getCurrent();
+        if (deadline != null) {
+            if (deadline.isCancelled() || deadline.isExpired()) {
+                throw new IOException("Request deadline exceeded before calling " + request.getURI().getHost());
+            }
+            request.getHeaders().set(RequestDeadline.BUDGET_HEADER, String.valueOf(deadline.remainingMillis()));
+        }
+        return execution.execute(request, body);
+    }
+
+    private ResponseEntity<String> readProjected(ClientHttpResponse response, JsonProjection projection) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        // The body changes size, let the container recompute framing
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+
+        Charset charset = StandardCharsets.UTF_8;
+        if (headers.getContentType() != null && headers.getContentType().getCharset() != null) {
+            charset = headers.getContentType().getCharset();
+        }
+
+        InputStream body = response.getBody();
+        String result;
+        if (response.getStatusCode().is2xxSuccessful() && isJson(headers)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            projection.apply(body, out);
+            // The generator always writes UTF-8
+            result = out.toString(StandardCharsets.UTF_8);
+        } else {
+            result = StreamUtils.copyToString(body, charset);
+        }
+        return new ResponseEntity<>(result, headers, response.getStatusCode());
+    }
+
+    /**
+     * Bounds connect and read timeouts by the remaining budget, and lets the
+     * deadline abort the connection when it is cancelled.
+     */
+    private static class DeadlineAwareRequestFactory extends SimpleClientHttpRequestFactory {
+        @Override
+        protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+            super.prepareConnection(connection, httpMethod);
+            RequestDeadline deadline = RequestDeadline.getCurrent();
+            if (deadline != null) {
+                int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remainingMillis()));
+                connection.setConnectTimeout(remaining);
+                connection.setReadTimeout(remaining);
+                deadline.onAbort(connection::disconnect);
+            }
+        }
+    }
+
+    private static long byteLength(String body) {
+        return body != null ? body.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    private boolean isJson(HttpHeaders headers) {
+        return headers.getContentType() != null
+                && headers.getContentType().getSubtype().toLowerCase().contains("json");
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.sharedstate;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for the shared store, for a single gateway instance and for
+ * tests. Behaves like the Redis store, minus the network.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.shared-state.backend", havingValue = "memory", matchIfMissing = true)
+public class InMemorySharedStateStore implements SharedStateStore {
+
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized List<Long> increment(List<CounterUpdate> updates) {
+        long now = System.nanoTime();
+        counters.values().removeIf(counter -> now - counter.expiresAt >= 0);
+
+        List<Long> totals = new ArrayList<>(updates.size());
+        for (CounterUpdate update : updates) {
+            if (update.getDelta() == 0) {
+                Counter counter = counters.get(update.getKey());
+                totals.add(counter != null ? counter.value : 0L);
+                continue;
+            }
+            Counter counter = counters.computeIfAbsent(update.getKey(), key -> new Counter());
+            counter.value += update.getDelta();
+            counter.expiresAt = now + update.getTtl().toNanos();
+            totals.add(counter.value);
+        }
+        return totals;
+    }
+
+    @Override
+    public void publish(String channel, List<String> messages) {
+        for (Consumer<String> listener : listeners.getOrDefault(channel, List.of())) {
+            messages.forEach(listener);
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listeners.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    private static class Counter {
+        private long value;
+        private long expiresAt;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.sharedstate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Shared store backed by Redis (or any server speaking its protocol). Each batch
+ * is sent as one pipeline; messages go through Redis pub/sub. Subscriptions are
+ * made once the application context has started, and re-established in the
+ * background whenever Redis is unreachable.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.shared-state.backend", havingValue = "redis")
+public class RedisSharedStateStore implements SharedStateStore, SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisSharedStateStore.class);
+
+    private static final long SUBSCRIBE_RETRY_SECONDS = 5;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ScheduledExecutorService subscribeRetry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "redis-subscribe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running;
+
+    public RedisSharedStateStore(RedisConnectionFactory connectionFactory) {
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        // Re-subscribe in the background when an established subscription is lost
+        this.listenerContainer.setRecoveryBackoff(new FixedBackOff(
+                TimeUnit.SECONDS.toMillis(SUBSCRIBE_RETRY_SECONDS), FixedBackOff.UNLIMITED_ATTEMPTS));
+        this.listenerContainer.afterPropertiesSet();
+    }
+
+    @Override
+    public List<Long> increment(List<CounterUpdate> updates) {
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (CounterUpdate update : updates) {
+                byte[] key = update.getKey().getBytes(StandardCharsets.UTF_8);
+                if (update.getDelta() == 0) {
+                    // A read only: must not keep an idle counter alive
+                    connection.stringCommands().get(key);
+                } else {
+                    connection.stringCommands().incrBy(key, update.getDelta());
+                    connection.keyCommands().pExpire(key, update.getTtl().toMillis());
+                }
+            }
+            return null;
+        });
+        // One GET reply per read, INCRBY and PEXPIRE replies per increment
+        List<Long> totals = new ArrayList<>(updates.size());
+        int reply = 0;
+        for (CounterUpdate update : updates) {
+            if (update.getDelta() == 0) {
+                Object value = results.get(reply++);
+                totals.add(value != null ? Long.parseLong(value.toString()) : 0L);
+            } else {
+                totals.add((Long) results.get(reply));
+                reply += 2;
+            }
+        }
+        return totals;
+    }
+
+    @Override
+    public void publish(String channel, List<String> messages) {
+        byte[] rawChannel = channel.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String message : messages) {
+                connection.publish(rawChannel, message.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> listener.accept(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(channel));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listen(true);
+    }
+
+    /**
+     * The container only recovers subscriptions it once had, so the first one is retried here.
+     */
+    private void listen(boolean firstAttempt) {
+        try {
+            listenerContainer.start();
+            if (!firstAttempt) {
+                logger.info("Subscribed to Redis, receiving messages from other replicas");
+            }
+        } catch (RuntimeException e) {
+            if (firstAttempt) {
+                logger.warn("Cannot subscribe to Redis, messages from other replicas are not received until it is reachable: {}",
+                        e.getMessage());
+            }
+            listenerContainer.stop();
+            if (running) {
+                subscribeRetry.schedule(() -> listen(false), SUBSCRIBE_RETRY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        subscribeRetry.shutdownNow();
+        listenerContainer.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.sharedstate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Store holding state shared by all gateway replicas. Calls are made in batches by
+ * {@link SharedStateSync}, never on the request path. Implementations throw a
+ * RuntimeException when the store cannot be reached.
+ */
+public interface SharedStateStore {
+
+    /**
+     * Applies the increments in a single round trip.
+     * @return the new total of each counter, in the same order
+     */
+    List<Long> increment(List<CounterUpdate> updates);
+
+    /**
+     * Publishes the messages on the channel to every subscribed replica.
+     */
+    void publish(String channel, List<String> messages);
+
+    /**
+     * Registers a listener for messages published on the channel (including our own).
+     */
+    void subscribe(String channel, Consumer<String> listener);
+
+    /**
+     * Increment of a shared counter. A zero delta just reads the current total (0 if the
+     * counter does not exist) without extending its TTL.
+     */
+    class CounterUpdate {
+        private final String key;
+        private final long delta;
+        private final Duration ttl;
+
+        public CounterUpdate(String key, long delta, Duration ttl) {
+            this.key = key;
+            this.delta = delta;
+            this.ttl = ttl;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getDelta() {
+            return delta;
+        }
+
+        /** How long the counter lives after its last update */
+        public Duration getTtl() {
+            return ttl;
+        }
+    }
+}
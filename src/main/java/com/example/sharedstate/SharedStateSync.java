@@ -0,0 +1,249 @@
+package com.example.sharedstate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps gateway-side counters and broadcast messages in sync across replicas
+ * through a {@link SharedStateStore}, without putting the store on the request path.
+ *
+ * Requests update a local near-cache: a counter's value is the total last read from
+ * the store plus the local increments it does not include yet. A background thread
+ * sends the pending increments and messages in one batch per flush interval, which
+ * also returns the totals with the other replicas' increments. Counters without
+ * local increments are only read, once per refresh interval. When the store cannot be reached,
+ * counters keep counting locally (each replica on its own) and messages are dropped;
+ * the store is retried every retry interval and local increments are sent once it
+ * is back.
+ */
+@Service
+public class SharedStateSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedStateSync.class);
+
+    private static final int MAX_PENDING_MESSAGES = 1000;
+
+    private final SharedStateStore store;
+    private final long refreshIntervalNanos;
+    private final long retryIntervalNanos;
+    private final String replicaId = UUID.randomUUID().toString();
+    private final Map<String, SharedCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, ArrayBlockingQueue<String>> outbox = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Timer flushTimer;
+    private final Counter droppedMessages;
+
+    private volatile boolean available = true;
+    private long nextAttempt;
+
+    public SharedStateSync(SharedStateStore store, MeterRegistry meterRegistry,
+                           @Value("${gateway.shared-state.flush-interval:100ms}") Duration flushInterval,
+                           @Value("${gateway.shared-state.refresh-interval:1s}") Duration refreshInterval,
+                           @Value("${gateway.shared-state.retry-interval:5s}") Duration retryInterval) {
+        this.store = store;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.flushTimer = Timer.builder("gateway.shared_state.flush")
+                .description("Time to send a batch of updates to the shared store")
+                .register(meterRegistry);
+        this.droppedMessages = Counter.builder("gateway.shared_state.dropped_messages")
+                .description("Messages not delivered to other replicas (store unreachable or outbox full)")
+                .register(meterRegistry);
+        Gauge.builder("gateway.shared_state.available", this, s -> s.available ? 1 : 0)
+                .description("1 while the shared store is reachable, 0 while running on local state only")
+                .register(meterRegistry);
+        Gauge.builder("gateway.shared_state.counters", counters, Map::size)
+                .description("Shared counters cached by this replica")
+                .register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shared-state");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, flushInterval.toMillis());
+        this.flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Increments a counter shared by all replicas.
+     * @param ttl how long the counter is kept after its last update
+     * @return the counter's approximate total across replicas, including this increment
+     */
+    public long increment(String key, Duration ttl) {
+        SharedCounter counter = counters.computeIfAbsent(key, k -> new SharedCounter(k, ttl));
+        counter.local.increment();
+        counter.touch();
+        return counter.value();
+    }
+
+    /**
+     * Sends a message to the other replicas, with the next batch. Best effort.
+     */
+    public void publish(String channel, String message) {
+        ArrayBlockingQueue<String> queue = outbox.computeIfAbsent(channel, c -> new ArrayBlockingQueue<>(MAX_PENDING_MESSAGES));
+        if (!available || !queue.offer(replicaId + " " + message)) {
+            droppedMessages.increment();
+        }
+    }
+
+    /**
+     * Receives the messages other replicas publish on the channel (not our own).
+     */
+    public void subscribe(String channel, Consumer<String> listener) {
+        store.subscribe(channel, raw -> {
+            int separator = raw.indexOf(' ');
+            if (separator < 0 || raw.substring(0, separator).equals(replicaId)) {
+                return;
+            }
+            try {
+                listener.accept(raw.substring(separator + 1));
+            } catch (RuntimeException e) {
+                logger.warn("Cannot handle shared state message on {}: {}", channel, e.getMessage());
+            }
+        });
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Sends one batch. Runs on the flusher thread; package-private so tests can flush deterministically.
+     */
+    void flush() {
+        long now = System.nanoTime();
+        if (!available && now - nextAttempt < 0) {
+            return;
+        }
+
+        List<SharedCounter> batch = new ArrayList<>();
+        List<Long> sent = new ArrayList<>();
+        List<SharedStateStore.CounterUpdate> updates = new ArrayList<>();
+        Iterator<SharedCounter> iterator = counters.values().iterator();
+        while (iterator.hasNext()) {
+            SharedCounter counter = iterator.next();
+            if (counter.isExpired(now)) {
+                iterator.remove();
+                continue;
+            }
+            long local = counter.local.sum();
+            long delta = local - counter.synced.includedLocal;
+            if (delta == 0 && now - counter.nextRefresh < 0) {
+                // Idle here: its total only needs the other replicas' increments, on the slower cadence
+                continue;
+            }
+            batch.add(counter);
+            sent.add(local);
+            updates.add(new SharedStateStore.CounterUpdate(counter.key, delta, counter.ttl));
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!updates.isEmpty()) {
+                List<Long> totals = store.increment(updates);
+                for (int i = 0; i < batch.size(); i++) {
+                    SharedCounter counter = batch.get(i);
+                    counter.synced = new Synced(totals.get(i), sent.get(i));
+                    counter.nextRefresh = now + refreshIntervalNanos;
+                }
+            }
+            for (Map.Entry<String, ArrayBlockingQueue<String>> entry : outbox.entrySet()) {
+                List<String> messages = new ArrayList<>();
+                entry.getValue().drainTo(messages);
+                if (!messages.isEmpty()) {
+                    store.publish(entry.getKey(), messages);
+                }
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!available) {
+                available = true;
+                logger.info("Shared state store is reachable again, sharing gateway state across replicas");
+            }
+        } catch (RuntimeException e) {
+            // The increments stay pending (not in synced.includedLocal) and go with the next successful flush
+            outbox.values().forEach(queue -> {
+                droppedMessages.increment(queue.size());
+                queue.clear();
+            });
+            nextAttempt = System.nanoTime() + retryIntervalNanos;
+            if (available) {
+                available = false;
+                logger.warn("Shared state store unreachable, falling back to local-only state: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    private static class SharedCounter {
+        private final String key;
+        private final Duration ttl;
+        /** Every increment made on this replica, never reset */
+        private final LongAdder local = new LongAdder();
+        /** Last total read from the store; replaced as a whole so readers never see half an update */
+        private volatile Synced synced = new Synced(0, 0);
+        private volatile long expiresAt;
+        /** When an idle counter's total is read again; flusher thread only */
+        private long nextRefresh;
+
+        SharedCounter(String key, Duration ttl) {
+            this.key = key;
+            this.ttl = ttl;
+            touch();
+        }
+
+        void touch() {
+            expiresAt = System.nanoTime() + ttl.toNanos();
+        }
+
+        /**
+         * Reads synced before local: local only grows, so the increments counted in
+         * synced.includedLocal are always part of the local sum.
+         */
+        long value() {
+            Synced current = synced;
+            return current.remote + local.sum() - current.includedLocal;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private static class Synced {
+        /** Total in the store */
+        private final long remote;
+        /** How many of this replica's increments (local.sum()) the total includes */
+        private final long includedLocal;
+
+        Synced(long remote, long includedLocal) {
+            this.remote = remote;
+            this.includedLocal = includedLocal;
+        }
+    }
+}
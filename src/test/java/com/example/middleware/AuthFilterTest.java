@@ -0,0 +1,62 @@
+package com.example.middleware;
+
+import com.example.service.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AuthFilterTest {
+
+    private static final String SECRET = "test-secret-key-that-is-long-enough-for-hs256";
+
+    private final AuthFilter authFilter = new AuthFilter();
+
+    AuthFilterTest() {
+        ReflectionTestUtils.setField(authFilter, "jwtService", new JwtService(SECRET));
+    }
+
+    @Test
+    void guestReadWithSpoofedIdentityHeadersHasNoValidatedUser() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets/1");
+        request.addHeader("x-user", "42");
+        request.addHeader("x-role", "admin");
+        MockFilterChain chain = new MockFilterChain();
+
+        authFilter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(UserContext.fromRequest(chain.getRequest()));
+    }
+
+    @Test
+    void authenticatedRequestCarriesTheUserFromTheToken() throws Exception {
+        String token = Jwts.builder()
+                .claim("id", 7)
+                .claim("username", "alice")
+                .claim("role", "moderator")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/tickets");
+        request.addHeader("Authorization", "Bearer " + token);
+        request.addHeader("x-user", "42");
+        MockFilterChain chain = new MockFilterChain();
+
+        authFilter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        UserContext user = UserContext.fromRequest(chain.getRequest());
+        assertNotNull(user);
+        assertEquals("7", user.getUserId());
+        assertEquals("alice", user.getUsername());
+        assertEquals("moderator", user.getRole());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.middleware;
+
+import com.example.service.JwtService;
+import com.example.service.RateLimiter;
+import com.example.sharedstate.InMemorySharedStateStore;
+import com.example.sharedstate.SharedStateSync;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimitFilterTest {
+
+    private static final String SECRET = "test-secret-key-that-is-long-enough-for-hs256";
+
+    private final SharedStateSync sharedState = new SharedStateSync(new InMemorySharedStateStore(),
+            new SimpleMeterRegistry(), Duration.ofHours(1), Duration.ofSeconds(1), Duration.ofSeconds(5));
+    private final AuthFilter authFilter = new AuthFilter();
+    private final RateLimitFilter rateLimitFilter = new RateLimitFilter();
+
+    RateLimitFilterTest() {
+        ReflectionTestUtils.setField(authFilter, "jwtService", new JwtService(SECRET));
+        ReflectionTestUtils.setField(rateLimitFilter, "rateLimiter",
+                new RateLimiter(sharedState, new SimpleMeterRegistry(), true, 1, Duration.ofHours(1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sharedState.shutdown();
+    }
+
+    @Test
+    void guestsCannotSpendAnotherUsersQuota() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest guest = new MockHttpServletRequest("GET", "/api/tickets/1");
+            guest.addHeader("x-user", "7");
+            assertEquals(200, send(guest));
+        }
+
+        assertEquals(200, send(authenticated("7")));
+        assertEquals(429, send(authenticated("7")));
+        assertEquals(200, send(authenticated("8")));
+    }
+
+    private MockHttpServletRequest authenticated(String userId) {
+        String token = Jwts.builder()
+                .claim("id", userId)
+                .claim("username", "user" + userId)
+                .claim("role", "user")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/tickets");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    private int send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+            }
+        };
+        new MockFilterChain(servlet, authFilter, rateLimitFilter).doFilter(request, response);
+        return response.getStatus();
+    }
+}
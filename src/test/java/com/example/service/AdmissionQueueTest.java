@@ -0,0 +1,195 @@
+package com.example.service;
+
+import com.example.middleware.RequestPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@link AdmissionQueue} with real waiting threads, observing it through its gauges.
+ */
+class AdmissionQueueTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void handsFreedSlotsToTheHighestClassFirst() throws Exception {
+        AdmissionQueue queue = queue(1, 10, 1_000, 10_000, 10_000);
+        assertTrue(queue.acquire(RequestPriority.CRITICAL));
+
+        List<RequestPriority> admissionOrder = new CopyOnWriteArrayList<>();
+        Future<?> low = waitFor(queue, RequestPriority.LOW, admissionOrder);
+        waitUntil(() -> gauge("queued") == 1);
+        Future<?> normal = waitFor(queue, RequestPriority.NORMAL, admissionOrder);
+        waitUntil(() -> gauge("queued") == 2);
+        Future<?> high = waitFor(queue, RequestPriority.HIGH, admissionOrder);
+        waitUntil(() -> gauge("queued") == 3);
+
+        queue.release();
+        high.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(RequestPriority.HIGH), admissionOrder);
+        // The slot went straight to the waiter, it was never free
+        assertEquals(1, gauge("in_flight"));
+
+        queue.release();
+        normal.get(5, TimeUnit.SECONDS);
+        queue.release();
+        low.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(RequestPriority.HIGH, RequestPriority.NORMAL, RequestPriority.LOW), admissionOrder);
+
+        queue.release();
+        assertEquals(0, gauge("in_flight"));
+        assertEquals(0, gauge("queued"));
+    }
+
+    @Test
+    void evictsALowerClassWaiterWhenTheQueueIsFull() throws Exception {
+        AdmissionQueue queue = queue(1, 1, 1_000, 10_000, 10_000);
+        assertTrue(queue.acquire(RequestPriority.CRITICAL));
+
+        Future<Boolean> low = threads.submit(() -> queue.acquire(RequestPriority.LOW));
+        waitUntil(() -> gauge("queued") == 1);
+        Future<Boolean> high = threads.submit(() -> queue.acquire(RequestPriority.HIGH));
+
+        // The LOW waiter is shed right away instead of waiting out its budget
+        assertFalse(low.get(5, TimeUnit.SECONDS));
+        assertEquals(1, gauge("queued"));
+        // Nothing lower than HIGH is left to evict
+        assertFalse(queue.acquire(RequestPriority.NORMAL));
+
+        queue.release();
+        assertTrue(high.get(5, TimeUnit.SECONDS));
+        queue.release();
+
+        assertEquals(0, gauge("in_flight"));
+        assertEquals(0, gauge("queued"));
+        assertEquals(1, shed(RequestPriority.LOW));
+        assertEquals(1, shed(RequestPriority.NORMAL));
+        assertEquals(0, shed(RequestPriority.HIGH));
+    }
+
+    @Test
+    void shedsLowImmediatelyOnceAStandingQueueMarksTheGatewayOverloaded() throws Exception {
+        AdmissionQueue queue = queue(1, 10, 1, 20, 10_000);
+        assertTrue(queue.acquire(RequestPriority.CRITICAL));
+        // Let the interval with that undelayed admission end, the waiter below starts a fresh one
+        Thread.sleep(30);
+        Future<Boolean> critical = threads.submit(() -> queue.acquire(RequestPriority.CRITICAL));
+        waitUntil(() -> gauge("queued") == 1);
+        assertEquals(0, gauge("overloaded"));
+
+        // A whole interval passes with a request stuck in the queue
+        Thread.sleep(40);
+        long start = System.nanoTime();
+        assertFalse(queue.acquire(RequestPriority.LOW));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(20), "LOW must not wait");
+        assertEquals(1, gauge("overloaded"));
+        assertEquals(1, shed(RequestPriority.LOW));
+        assertEquals(1, gauge("queued"));
+
+        queue.release();
+        assertTrue(critical.get(5, TimeUnit.SECONDS));
+        queue.release();
+        assertEquals(0, gauge("in_flight"));
+    }
+
+    @Test
+    void interruptedWaitersNeverLeakASlot() throws Exception {
+        AdmissionQueue queue = queue(1, 10, 1_000, 10_000, 10_000);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(queue.acquire(RequestPriority.CRITICAL));
+            AtomicBoolean admitted = new AtomicBoolean();
+            Thread waiter = new Thread(() -> {
+                try {
+                    if (queue.acquire(RequestPriority.HIGH)) {
+                        admitted.set(true);
+                        queue.release();
+                    }
+                } catch (InterruptedException e) {
+                    // A slot handed over at the same moment is released by acquire itself
+                }
+            });
+            waiter.start();
+            waitUntil(() -> gauge("queued") == 1);
+
+            // Race the interrupt against the handoff
+            waiter.interrupt();
+            queue.release();
+            waiter.join(5_000);
+
+            assertFalse(waiter.isAlive());
+            assertEquals(0, gauge("in_flight"), "iteration " + i + ", admitted " + admitted.get());
+            assertEquals(0, gauge("queued"));
+        }
+    }
+
+    @Test
+    void timedOutWaitersNeverLeakASlot() throws Exception {
+        // HIGH waits 1-2 ms: releases land before, during and after the timeout
+        AdmissionQueue queue = queue(1, 10, 1_000, 1, 10_000);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(queue.acquire(RequestPriority.CRITICAL));
+            Future<Boolean> waiter = threads.submit(() -> {
+                boolean admitted = queue.acquire(RequestPriority.HIGH);
+                if (admitted) {
+                    queue.release();
+                }
+                return admitted;
+            });
+
+            TimeUnit.MICROSECONDS.sleep(i * 10 % 2_000);
+            queue.release();
+            waiter.get(5, TimeUnit.SECONDS);
+
+            assertEquals(0, gauge("in_flight"), "iteration " + i);
+            assertEquals(0, gauge("queued"));
+        }
+    }
+
+    private AdmissionQueue queue(int maxConcurrent, int maxQueued, long targetMs, long intervalMs, long criticalMaxWaitMs) {
+        return new AdmissionQueue(registry, maxConcurrent, maxQueued, targetMs, intervalMs, criticalMaxWaitMs);
+    }
+
+    private Future<?> waitFor(AdmissionQueue queue, RequestPriority priority, List<RequestPriority> admissionOrder) {
+        return threads.submit(() -> {
+            assertTrue(queue.acquire(priority));
+            admissionOrder.add(priority);
+            return null;
+        });
+    }
+
+    private double gauge(String name) {
+        return registry.get("gateway.overload." + name).gauge().value();
+    }
+
+    private double shed(RequestPriority priority) {
+        return registry.get("gateway.overload.shed").tag("priority", priority.name().toLowerCase()).counter().count();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "condition not met within 5s");
+            Thread.sleep(1);
+        }
+    }
+}
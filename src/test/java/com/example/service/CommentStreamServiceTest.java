@@ -0,0 +1,257 @@
+package com.example.service;
+
+import com.example.controller.CommentStreamController;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives {@link CommentStreamService} through {@link CommentEventListener} with fake
+ * broker messages, and through the SSE endpoint with mock async requests whose
+ * output streams behave like a container's non-blocking ones.
+ */
+class CommentStreamServiceTest {
+
+    private static final int BUFFER = 2;
+    /** Request header making the test stream accept one write, then never be ready again */
+    private static final String STALL_HEADER = "X-Test-Stall";
+
+    private CommentStreamService service;
+    private CommentEventListener listener;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void fansEventsOutToTheTicketsSubscribersOnly() throws Exception {
+        MockMvc mockMvc = setUp(100);
+        MvcResult first = subscribe(mockMvc, 1, false);
+        MvcResult second = subscribe(mockMvc, 1, false);
+        MvcResult otherTicket = subscribe(mockMvc, 2, false);
+        assertEquals(3, service.getSubscriberCount());
+
+        listener.onCommentEvent(message("comment.updated",
+                "{\"id\": 7, \"ticket_id\": 1, \"comment_text\": \"edited\", \"requesting_user\": 5}"));
+
+        for (MvcResult result : new MvcResult[] {first, second}) {
+            waitUntil(() -> content(result).contains("event:comment.updated"));
+            String content = content(result);
+            assertTrue(content.startsWith(":connected\n\n"));
+            assertTrue(content.contains("\"id\":7"));
+            assertTrue(content.contains("\"comment_text\":\"edited\""));
+            // Only whitelisted fields reach the (public) stream
+            assertFalse(content.contains("requesting_user"));
+        }
+        assertFalse(content(otherTicket).contains("event:"));
+    }
+
+    @Test
+    void ignoresEventsWithoutTicketOrFromOtherRoutingKeys() throws Exception {
+        MockMvc mockMvc = setUp(100);
+        MvcResult result = subscribe(mockMvc, 1, false);
+
+        listener.onCommentEvent(message("comment.deleted", "{\"id\": 7}"));
+        listener.onCommentEvent(message("ticket.updated", "{\"id\": 7, \"ticket_id\": 1}"));
+        listener.onCommentEvent(message("comment.created", "not json"));
+        listener.onCommentEvent(message("comment.deleted", "{\"id\": 8, \"ticket_id\": 1}"));
+
+        waitUntil(() -> content(result).contains("event:comment.deleted"));
+        String content = content(result);
+        assertFalse(content.contains("\"id\":7"));
+        assertEquals(1, content.split("event:", -1).length - 1);
+    }
+
+    @Test
+    void disconnectsSubscriberWhoseBufferFills() throws Exception {
+        MockMvc mockMvc = setUp(100);
+        MvcResult slow = subscribe(mockMvc, 1, true);
+
+        // The stream takes at most one frame; the buffer holds the rest until it overflows
+        for (int i = 0; i < BUFFER + 1; i++) {
+            listener.onCommentEvent(message("comment.created", "{\"id\": " + i + ", \"ticket_id\": 1}"));
+        }
+
+        assertEquals(1, service.getSlowConsumersDropped());
+        assertEquals(0, service.getSubscriberCount());
+        assertFalse(slow.getRequest().isAsyncStarted(), "the connection is released");
+        listener.onCommentEvent(message("comment.created", "{\"id\": 9, \"ticket_id\": 1}"));
+        assertEquals(1, service.getSlowConsumersDropped());
+    }
+
+    @Test
+    void stalledSubscriberDoesNotDelayOtherTickets() throws Exception {
+        // A single dispatch thread: a blocking write on the stalled stream would starve everyone
+        MockMvc mockMvc = setUp(100);
+        subscribe(mockMvc, 1, true);
+        MvcResult healthy = subscribe(mockMvc, 2, false);
+
+        listener.onCommentEvent(message("comment.created", "{\"id\": 1, \"ticket_id\": 1}"));
+        listener.onCommentEvent(message("comment.created", "{\"id\": 2, \"ticket_id\": 2}"));
+
+        waitUntil(() -> content(healthy).contains("\"id\":2"));
+        assertEquals(2, service.getSubscriberCount());
+        assertEquals(0, service.getSlowConsumersDropped());
+    }
+
+    @Test
+    void removesSubscriberOnCompletion() throws Exception {
+        MockMvc mockMvc = setUp(100);
+        MvcResult result = subscribe(mockMvc, 1, false);
+        subscribe(mockMvc, 1, false);
+
+        result.getRequest().getAsyncContext().complete();
+
+        assertEquals(1, service.getSubscriberCount());
+    }
+
+    @Test
+    void removesSubscriberOnError() throws Exception {
+        MockMvc mockMvc = setUp(100);
+        MvcResult result = subscribe(mockMvc, 1, false);
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener asyncListener : asyncContext.getListeners()) {
+            asyncListener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+        }
+
+        assertEquals(0, service.getSubscriberCount());
+        listener.onCommentEvent(message("comment.created", "{\"id\": 1, \"ticket_id\": 1}"));
+        assertEquals(0, service.getSlowConsumersDropped());
+    }
+
+    @Test
+    void rejectsSubscribersOverTheLimit() throws Exception {
+        MockMvc mockMvc = setUp(1);
+        subscribe(mockMvc, 1, false);
+
+        mockMvc.perform(get("/api/tickets/{id}/comments/stream", 2))
+                .andExpect(status().isServiceUnavailable());
+        assertEquals(1, service.getSubscriberCount());
+    }
+
+    private MockMvc setUp(int maxSubscribers) {
+        service = new CommentStreamService(maxSubscribers, BUFFER, 60_000, 3_600_000, 1);
+        listener = new CommentEventListener();
+        ReflectionTestUtils.setField(listener, "commentStreamService", service);
+        CommentStreamController controller = new CommentStreamController();
+        ReflectionTestUtils.setField(controller, "commentStreamService", service);
+
+        Filter nonBlocking = (request, response, chain) -> chain.doFilter(request, new NonBlockingResponse(
+                (HttpServletResponse) response, ((HttpServletRequest) request).getHeader(STALL_HEADER) != null));
+        return MockMvcBuilders.standaloneSetup(controller).addFilters(nonBlocking).build();
+    }
+
+    private static MvcResult subscribe(MockMvc mockMvc, long ticketId, boolean stalled) throws Exception {
+        return mockMvc.perform(stalled
+                        ? get("/api/tickets/{id}/comments/stream", ticketId).header(STALL_HEADER, "true")
+                        : get("/api/tickets/{id}/comments/stream", ticketId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static Message message(String routingKey, String body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setReceivedRoutingKey(routingKey);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    private static String content(MvcResult result) {
+        try {
+            return result.getResponse().getContentAsString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Response with a non-blocking output stream, like the container's in async mode.
+     * A stalled stream accepts one write and then never becomes ready again, like a
+     * client that stopped reading.
+     */
+    private static class NonBlockingResponse extends HttpServletResponseWrapper {
+        private final boolean stalled;
+        private ServletOutputStream stream;
+
+        NonBlockingResponse(HttpServletResponse response, boolean stalled) {
+            super(response);
+            this.stalled = stalled;
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    private volatile boolean written;
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (!isReady()) {
+                            throw new IllegalStateException("write while not ready");
+                        }
+                        written = true;
+                        delegate.write(b, off, len);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return !(stalled && written);
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        try {
+                            writeListener.onWritePossible();
+                        } catch (IOException e) {
+                            writeListener.onError(e);
+                        }
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The time budget starts when the request enters the gateway, not when it reaches the controller.
+ */
+class DeadlineServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeadlineService deadlineService = deadlineService(Duration.ofMillis(300));
+
+    @Test
+    void upstreamCallGetsOnlyTheBudgetLeftAfterTheFilters() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets");
+        RequestDeadline deadline = deadlineService.start(request);
+        Thread.sleep(100);
+
+        WebAsyncTask<ResponseEntity<String>> task = deadlineService.submit(request, "ticket-service",
+                () -> ResponseEntity.ok("[]"));
+
+        assertSame(deadline, request.getAttribute(RequestDeadline.REQUEST_ATTRIBUTE));
+        assertEquals("ticket-service", deadline.getUpstream());
+        assertTrue(task.getTimeout() <= 200, "timeout " + task.getTimeout());
+        assertTrue(task.getTimeout() > 0);
+    }
+
+    @Test
+    void requestWhoseBudgetRanOutBeforeTheControllerIsNotSentUpstream() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets");
+        request.addHeader(RequestDeadline.BUDGET_HEADER, "20");
+        deadlineService.start(request);
+        Thread.sleep(40);
+
+        AtomicBoolean called = new AtomicBoolean();
+        WebAsyncTask<ResponseEntity<String>> task = deadlineService.submit(request, "ticket-service", () -> {
+            called.set(true);
+            return ResponseEntity.ok("[]");
+        });
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, ((ResponseEntity<?>) task.getCallable().call()).getStatusCode());
+        assertFalse(called.get());
+        assertEquals(1, meterRegistry.get("gateway.upstream.abandoned")
+                .tag("upstream", "ticket-service").tag("outcome", "timeout").counter().count());
+    }
+
+    @Test
+    void startsTheBudgetInSubmitWhenNoFilterDid() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets");
+
+        WebAsyncTask<ResponseEntity<String>> task = deadlineService.submit(request, "ticket-service",
+                () -> ResponseEntity.ok("[]"));
+
+        assertTrue(task.getTimeout() > 200 && task.getTimeout() <= 300, "timeout " + task.getTimeout());
+        assertEquals("[]", ((ResponseEntity<?>) task.getCallable().call()).getBody());
+    }
+
+    private DeadlineService deadlineService(Duration defaultTimeout) {
+        GatewayProperties gatewayProperties = new GatewayProperties();
+        gatewayProperties.setDefaultTimeout(defaultTimeout);
+        RouteRegistry routeRegistry = new RouteRegistry();
+        ReflectionTestUtils.setField(routeRegistry, "gatewayProperties", gatewayProperties);
+
+        DeadlineService service = new DeadlineService();
+        ReflectionTestUtils.setField(service, "gatewayProperties", gatewayProperties);
+        ReflectionTestUtils.setField(service, "routeRegistry", routeRegistry);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "upstreamExecutor", new ThreadPoolTaskExecutor());
+        return service;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import com.example.middleware.UserContext;
+import com.example.sharedstate.InMemorySharedStateStore;
+import com.example.sharedstate.SharedStateSync;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deduplication of retried writes on a single replica.
+ */
+class IdempotencyServiceTest {
+
+    private static final String BODY = "{\"title\":\"Printer on fire\"}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SharedStateSync sharedState = new SharedStateSync(new InMemorySharedStateStore(), meterRegistry,
+            Duration.ofHours(1), Duration.ofSeconds(1), Duration.ZERO);
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    /** Upstream calls actually made */
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+        sharedState.shutdown();
+    }
+
+    @Test
+    void replaysTheStoredResponseWithoutCallingUpstream() throws Exception {
+        IdempotencyService service = service(100);
+
+        ResponseEntity<String> first = service.wrap(request("key-1", BODY), BODY, created()).call();
+        ResponseEntity<String> retry = service.wrap(request("key-1", BODY), BODY, created()).call();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void duplicateOfAnInFlightRequestWaitsForItsResponse() throws Exception {
+        IdempotencyService service = service(100);
+        CountDownLatch upstreamResponds = new CountDownLatch(1);
+        Future<ResponseEntity<String>> original = threads.submit(
+                service.wrap(request("key-1", BODY), BODY, blocked(upstreamResponds)));
+        waitForUpstreamCalls(1);
+
+        Future<ResponseEntity<String>> retry = threads.submit(
+                withDeadline(5_000, service.wrap(request("key-1", BODY), BODY, created())));
+        Thread.sleep(50);
+        assertFalse(retry.isDone(), "the retry waits for the original");
+        upstreamResponds.countDown();
+
+        assertEquals(HttpStatus.CREATED, original.get(5, TimeUnit.SECONDS).getStatusCode());
+        ResponseEntity<String> replayed = retry.get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void duplicateGets409WhenTheOriginalOutlastsItsBudget() throws Exception {
+        IdempotencyService service = service(100);
+        CountDownLatch upstreamResponds = new CountDownLatch(1);
+        Future<ResponseEntity<String>> original = threads.submit(
+                service.wrap(request("key-1", BODY), BODY, blocked(upstreamResponds)));
+        waitForUpstreamCalls(1);
+
+        ResponseEntity<String> retry = withDeadline(50, service.wrap(request("key-1", BODY), BODY, created())).call();
+
+        assertEquals(HttpStatus.CONFLICT, retry.getStatusCode());
+        upstreamResponds.countDown();
+        assertEquals(HttpStatus.CREATED, original.get(5, TimeUnit.SECONDS).getStatusCode());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void rejectsAKeyReusedForADifferentRequest() throws Exception {
+        IdempotencyService service = service(100);
+        String otherBody = "{\"title\":\"Printer fixed\"}";
+
+        service.wrap(request("key-1", BODY), BODY, created()).call();
+        ResponseEntity<String> reused = service.wrap(request("key-1", otherBody), otherBody, created()).call();
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void serverErrorsAreNotStored() throws Exception {
+        IdempotencyService service = service(100);
+        Callable<ResponseEntity<String>> unavailable = () -> {
+            upstreamCalls.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("{}");
+        };
+
+        service.wrap(request("key-1", BODY), BODY, unavailable).call();
+        ResponseEntity<String> retry = service.wrap(request("key-1", BODY), BODY, created()).call();
+
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void scopesKeysToTheValidatedUserOnly() throws Exception {
+        IdempotencyService service = service(100);
+        MockHttpServletRequest guest = new MockHttpServletRequest("POST", "/api/tickets");
+        guest.addHeader(IdempotencyService.KEY_HEADER, "key-1");
+        guest.addHeader("x-user", "7");
+        Callable<ResponseEntity<String>> call = created();
+
+        // A spoofed x-user header is not an identity: the request is forwarded as is
+        assertSame(call, service.wrap(guest, BODY, call));
+
+        service.wrap(request("key-1", BODY), BODY, created()).call();
+        MockHttpServletRequest otherUser = request("key-1", BODY);
+        otherUser.setAttribute(UserContext.REQUEST_ATTRIBUTE, new UserContext("8", "bob", "user"));
+        service.wrap(otherUser, BODY, created()).call();
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void neverEvictsEntriesThatAreStillInFlight() throws Exception {
+        IdempotencyService service = service(1);
+        CountDownLatch upstreamResponds = new CountDownLatch(1);
+        Future<ResponseEntity<String>> inFlight = threads.submit(
+                service.wrap(request("in-flight", BODY), BODY, blocked(upstreamResponds)));
+        waitForUpstreamCalls(1);
+
+        // Over capacity: the completed "old" entry goes, the in-flight one stays
+        service.wrap(request("old", BODY), BODY, created()).call();
+        service.wrap(request("new", BODY), BODY, created()).call();
+        assertEquals(3, upstreamCalls.get());
+
+        Future<ResponseEntity<String>> retry = threads.submit(
+                withDeadline(5_000, service.wrap(request("in-flight", BODY), BODY, created())));
+        upstreamResponds.countDown();
+        assertEquals("true", retry.get(5, TimeUnit.SECONDS).getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(HttpStatus.CREATED, inFlight.get(5, TimeUnit.SECONDS).getStatusCode());
+        assertEquals(3, upstreamCalls.get());
+
+        service.wrap(request("old", BODY), BODY, created()).call();
+        assertEquals(4, upstreamCalls.get());
+    }
+
+    private IdempotencyService service(int maxEntries) {
+        GatewayProperties.Route route = new GatewayProperties.Route();
+        route.setPath("/api/tickets");
+        route.setMethods(List.of("POST"));
+        route.getIdempotency().setEnabled(true);
+        GatewayProperties gatewayProperties = new GatewayProperties();
+        gatewayProperties.getRoutes().put("tickets-create", route);
+        gatewayProperties.nameRoutes();
+        RouteRegistry routeRegistry = new RouteRegistry();
+        ReflectionTestUtils.setField(routeRegistry, "gatewayProperties", gatewayProperties);
+
+        return new IdempotencyService(routeRegistry, meterRegistry, sharedState, maxEntries, Duration.ofHours(24));
+    }
+
+    private static MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/tickets");
+        request.addHeader(IdempotencyService.KEY_HEADER, key);
+        request.setContent(body.getBytes());
+        request.setAttribute(UserContext.REQUEST_ATTRIBUTE, new UserContext("7", "alice", "user"));
+        return request;
+    }
+
+    private Callable<ResponseEntity<String>> created() {
+        return () -> ResponseEntity.status(HttpStatus.CREATED).body("{\"id\":" + upstreamCalls.incrementAndGet() + "}");
+    }
+
+    private Callable<ResponseEntity<String>> blocked(CountDownLatch upstreamResponds) {
+        return () -> {
+            int id = upstreamCalls.incrementAndGet();
+            assertTrue(upstreamResponds.await(5, TimeUnit.SECONDS));
+            return ResponseEntity.status(HttpStatus.CREATED).body("{\"id\":" + id + "}");
+        };
+    }
+
+    /**
+     * Runs the call the way DeadlineService does, with the request's deadline current.
+     */
+    private static Callable<ResponseEntity<String>> withDeadline(long budgetMillis, Callable<ResponseEntity<String>> call) {
+        return () -> {
+            RequestDeadline.setCurrent(new RequestDeadline(budgetMillis));
+            try {
+                return call.call();
+            } finally {
+                RequestDeadline.clear();
+            }
+        };
+    }
+
+    private void waitForUpstreamCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (upstreamCalls.get() < expected) {
+            assertTrue(System.nanoTime() - deadline < 0, "upstream not called within 5s");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.service;
+
+import com.example.config.GatewayProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JsonProjectionTest {
+
+    private static final int ITEMS = 600;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void fieldsAloneKeepTheWholeList() throws Exception {
+        JsonNode tickets = project("fields=id").get("tickets");
+
+        assertEquals(ITEMS, tickets.size());
+        assertEquals(599, tickets.get(599).get("id").asInt());
+        assertFalse(tickets.get(0).has("title"));
+    }
+
+    @Test
+    void offsetAndSizeSliceTheList() throws Exception {
+        JsonNode response = project("offset=40&size=20");
+
+        assertEquals(20, response.get("tickets").size());
+        assertEquals(40, response.get("tickets").get(0).get("id").asInt());
+        assertEquals(ITEMS, response.get("total").asInt());
+    }
+
+    @Test
+    void sizeDefaultsToAndIsCappedAtMaxSize() throws Exception {
+        assertEquals(500, project("offset=0").get("tickets").size());
+        assertEquals(500, project("size=10000").get("tickets").size());
+    }
+
+    @Test
+    void noProjectionWithoutParameters() {
+        assertNull(JsonProjection.fromRequest(new MockHttpServletRequest("GET", "/api/tickets"), route()));
+    }
+
+    private JsonNode project(String query) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets");
+        request.setQueryString(query);
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            request.addParameter(parts[0], parts[1]);
+        }
+        JsonProjection projection = JsonProjection.fromRequest(request, route());
+
+        StringBuilder body = new StringBuilder("{\"total\": " + ITEMS + ", \"tickets\": [");
+        for (int i = 0; i < ITEMS; i++) {
+            body.append(i > 0 ? "," : "").append("{\"id\": ").append(i).append(", \"title\": \"t").append(i).append("\"}");
+        }
+        body.append("]}");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        projection.apply(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), out);
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    private static GatewayProperties.Route route() {
+        GatewayProperties.Route route = new GatewayProperties.Route();
+        route.getProjection().setEnabled(true);
+        route.getProjection().setCollection("tickets");
+        return route;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Body comparison between primary and shadow responses.
+ */
+class ShadowServiceTest {
+
+    private final ShadowService shadowService = new ShadowService(new SimpleMeterRegistry(), 1, 1,
+            Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+    @AfterEach
+    void tearDown() {
+        shadowService.shutdown();
+    }
+
+    @Test
+    void comparesJsonBodiesAsValues() {
+        assertTrue(shadowService.bodiesMatch(
+                "{\"id\":1,\"tags\":[\"a\",\"b\"],\"score\":2}",
+                "{ \"score\": 2.0, \"id\": 1, \"tags\": [\"a\", \"b\"] }", Set.of()));
+        assertFalse(shadowService.bodiesMatch("{\"id\":1,\"tags\":[\"a\",\"b\"]}", "{\"id\":1,\"tags\":[\"b\",\"a\"]}", Set.of()));
+        assertFalse(shadowService.bodiesMatch("{\"id\":1}", "{\"id\":\"1\"}", Set.of()));
+        assertFalse(shadowService.bodiesMatch("{\"id\":1}", "{\"id\":1,\"extra\":true}", Set.of()));
+    }
+
+    @Test
+    void leavesIgnoredFieldsOutAtAnyDepth() {
+        Set<String> ignored = Set.of("updated_at", "request_id");
+
+        assertTrue(shadowService.bodiesMatch(
+                "{\"request_id\":\"a\",\"tickets\":[{\"id\":1,\"updated_at\":\"10:00\"}]}",
+                "{\"request_id\":\"b\",\"tickets\":[{\"id\":1,\"updated_at\":\"10:01\"}]}", ignored));
+        assertFalse(shadowService.bodiesMatch(
+                "{\"tickets\":[{\"id\":1,\"updated_at\":\"10:00\"}]}",
+                "{\"tickets\":[{\"id\":2,\"updated_at\":\"10:00\"}]}", ignored));
+    }
+
+    @Test
+    void comparesOtherBodiesAsText() {
+        assertTrue(shadowService.bodiesMatch("OK", "OK", Set.of()));
+        assertTrue(shadowService.bodiesMatch(null, "", Set.of()));
+        assertFalse(shadowService.bodiesMatch("OK", "ok", Set.of()));
+        assertFalse(shadowService.bodiesMatch("{\"id\":1}", "<html>error</html>", Set.of()));
+        assertFalse(shadowService.bodiesMatch("", "{}", Set.of()));
+    }
+}
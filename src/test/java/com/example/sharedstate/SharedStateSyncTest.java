@@ -0,0 +1,236 @@
+package com.example.sharedstate;
+
+import com.example.service.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two {@link SharedStateSync} replicas sharing one {@link InMemorySharedStateStore}.
+ * Flushes are triggered by the test, the scheduled ones never run.
+ */
+class SharedStateSyncTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private final FlakyStore store = new FlakyStore();
+    private final SharedStateSync first = replica();
+    private final SharedStateSync second = replica();
+
+    @AfterEach
+    void tearDown() {
+        first.shutdown();
+        second.shutdown();
+    }
+
+    @Test
+    void mergesCounterTotalsAcrossReplicas() {
+        for (int i = 0; i < 3; i++) {
+            first.increment("requests", TTL);
+        }
+        second.increment("requests", TTL);
+        second.increment("requests", TTL);
+
+        first.flush();
+        second.flush();
+        first.flush();
+
+        assertEquals(6, first.increment("requests", TTL));
+        assertEquals(6, second.increment("requests", TTL));
+        assertEquals(1, first.increment("other", TTL));
+    }
+
+    @Test
+    void deliversMessagesToOtherReplicasOnly() {
+        List<String> receivedByFirst = new CopyOnWriteArrayList<>();
+        List<String> receivedBySecond = new CopyOnWriteArrayList<>();
+        first.subscribe("channel", receivedByFirst::add);
+        second.subscribe("channel", receivedBySecond::add);
+
+        first.publish("channel", "hello world");
+        first.flush();
+
+        assertEquals(List.of("hello world"), receivedBySecond);
+        assertTrue(receivedByFirst.isEmpty());
+    }
+
+    @Test
+    void countsLocallyWhileTheStoreIsDownAndSendsTheIncrementsOnRecovery() {
+        second.increment("requests", TTL);
+        second.flush();
+
+        store.down = true;
+        first.increment("requests", TTL);
+        first.increment("requests", TTL);
+        first.flush();
+
+        assertFalse(first.isAvailable());
+        assertEquals(3, first.increment("requests", TTL));
+        // Messages are not queued while the store is down
+        List<String> received = new CopyOnWriteArrayList<>();
+        second.subscribe("channel", received::add);
+        first.publish("channel", "lost");
+
+        store.down = false;
+        first.flush();
+        second.flush();
+
+        assertTrue(first.isAvailable());
+        // 1 from the second replica, 3 counted locally by the first while the store was down
+        assertEquals(5, first.increment("requests", TTL));
+        assertEquals(5, second.increment("requests", TTL));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void rateLimitAppliesToTheUsersTrafficOnAllReplicas() {
+        RateLimiter firstLimiter = new RateLimiter(first, new SimpleMeterRegistry(), true, 5, Duration.ofHours(1));
+        RateLimiter secondLimiter = new RateLimiter(second, new SimpleMeterRegistry(), true, 5, Duration.ofHours(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, firstLimiter.acquire("7"));
+        }
+        assertEquals(0, secondLimiter.acquire("7"));
+        assertEquals(0, secondLimiter.acquire("7"));
+        first.flush();
+        second.flush();
+        first.flush();
+
+        assertTrue(firstLimiter.acquire("7") > 0);
+        assertTrue(secondLimiter.acquire("7") > 0);
+        assertEquals(0, secondLimiter.acquire("8"));
+    }
+
+    @Test
+    void valueNeverUndercountsNorDoubleCountsWhileFlushing() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                first.flush();
+            }
+        });
+        flusher.start();
+
+        // Every increment sees at least the increments completed before it started, and at
+        // most those started before it returned
+        AtomicLong started = new AtomicLong();
+        AtomicLong completed = new AtomicLong();
+        List<String> violations = new CopyOnWriteArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(threads.submit(() -> {
+                    for (int i = 0; i < 50_000 && violations.isEmpty(); i++) {
+                        long lowerBound = completed.get() + 1;
+                        started.incrementAndGet();
+                        long value = first.increment("requests", TTL);
+                        long upperBound = started.get();
+                        completed.incrementAndGet();
+                        if (value < lowerBound || value > upperBound) {
+                            violations.add(value + " not in [" + lowerBound + ", " + upperBound + "]");
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            done.set(true);
+            flusher.join();
+            threads.shutdownNow();
+        }
+
+        assertTrue(violations.isEmpty(), violations.toString());
+        // Once everything is sent, the store's total replaces the local count exactly
+        first.flush();
+        assertEquals(List.of(completed.get()), store.increment(List.of(
+                new SharedStateStore.CounterUpdate("requests", 0, TTL))));
+        assertEquals(completed.get() + 1, first.increment("requests", TTL));
+    }
+
+    @Test
+    void sendsOnlyCountersWithLocalIncrementsAndRefreshesIdleOnesLessOften() {
+        SharedStateSync slowRefresh = replica(Duration.ofHours(1));
+        try {
+            slowRefresh.increment("active", TTL);
+            slowRefresh.increment("idle", TTL);
+            slowRefresh.flush();
+            store.updates.clear();
+
+            slowRefresh.increment("active", TTL);
+            slowRefresh.flush();
+            slowRefresh.flush();
+
+            assertEquals(List.of("active:1"), store.updates);
+        } finally {
+            slowRefresh.shutdown();
+        }
+    }
+
+    @Test
+    void readsIdleCountersOncePerRefreshInterval() {
+        first.increment("requests", TTL);
+        first.flush();
+        second.increment("requests", TTL);
+        second.flush();
+        store.updates.clear();
+
+        // Refresh interval zero: the idle counter is read on every flush, without an increment
+        first.flush();
+
+        assertEquals(List.of("requests:0"), store.updates);
+        assertEquals(3, first.increment("requests", TTL));
+    }
+
+    private SharedStateSync replica() {
+        return replica(Duration.ZERO);
+    }
+
+    private SharedStateSync replica(Duration refreshInterval) {
+        return new SharedStateSync(store, new SimpleMeterRegistry(), Duration.ofHours(1), refreshInterval, Duration.ZERO);
+    }
+
+    /**
+     * In-memory store that can be made unreachable, and records the updates it receives.
+     */
+    private static class FlakyStore extends InMemorySharedStateStore {
+        volatile boolean down;
+        final List<String> updates = new CopyOnWriteArrayList<>();
+
+        @Override
+        public synchronized List<Long> increment(List<CounterUpdate> batch) {
+            check();
+            batch.forEach(update -> updates.add(update.getKey() + ":" + update.getDelta()));
+            return super.increment(batch);
+        }
+
+        @Override
+        public void publish(String channel, List<String> messages) {
+            check();
+            super.publish(channel, messages);
+        }
+
+        private void check() {
+            if (down) {
+                throw new IllegalStateException("store unreachable");
+            }
+        }
+    }
+}